@@ -0,0 +1,177 @@
+package benchmark;
+
+import estructura.ArbolBST;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+import modelo.Libro;
+
+/**
+ * Micro-benchmarks del motor del catálogo (ArbolBST), al estilo JMH pero sin dependencias:
+ * cada escenario se prepara fuera de la medición, se ejecutan iteraciones de calentamiento
+ * y luego iteraciones medidas, y los resultados se acumulan en un sumidero para que el JIT
+ * no elimine el trabajo.
+ *
+ * Uso (desde la carpeta parcial2, ya compilado):
+ *   java -Xmx4g benchmark.BenchmarkCatalogo [tamaños] [modos]
+ *   java -Xmx4g benchmark.BenchmarkCatalogo 1000,100000,1000000 balanceado,simple
+ */
+public class BenchmarkCatalogo {
+    private static final int ITERACIONES_CALENTAMIENTO = 3;
+    private static final int ITERACIONES_MEDIDAS = 5;
+    private static final int MAX_CONSULTAS = 100_000;
+    private static final int MAX_ELIMINACIONES = 10_000;
+    /** Un árbol simple con inserción ordenada es O(n²); por encima de este tamaño se omite. */
+    private static final int MAX_SIMPLE_ORDENADO = 20_000;
+    private static final String[] CATEGORIAS = {
+        "Literatura", "Ficción", "Poesía", "Ensayo", "Historia", "Ciencia", "Filosofía", "Teatro",
+        "Biografía", "Infantil", "Arte", "Viajes", "Política", "Economía", "Derecho", "Medicina",
+        "Música", "Religión", "Deportes", "Cocina"
+    };
+
+    private static long sumidero;
+
+    /** Trabajo medido de una iteración; devuelve un valor que se acumula en el sumidero. */
+    @FunctionalInterface
+    interface Iteracion {
+        long ejecutar();
+    }
+
+    public static void main(String[] args) {
+        int[] tamanios = args.length > 0
+                ? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray()
+                : new int[] { 1_000, 100_000, 1_000_000 };
+        String[] modos = args.length > 1 ? args[1].split(",") : new String[] { "balanceado", "simple" };
+
+        System.out.printf("%-22s %-11s %10s %14s %16s%n", "benchmark", "modo", "n", "ns/op", "ops/s");
+        for (String modo : modos) {
+            boolean balanceado = modo.equals("balanceado");
+            for (int n : tamanios) {
+                ejecutarEscenarios(n, balanceado, modo);
+            }
+        }
+        System.out.println("(sumidero: " + sumidero + ")");
+    }
+
+    private static void ejecutarEscenarios(int n, boolean balanceado, String modo) {
+        Libro[] aleatorios = generarLibros(n, new Random(42));
+        Libro[] ordenados = aleatorios.clone();
+        Arrays.sort(ordenados, Comparator.comparing(l -> apellido(l.getAutor())));
+
+        medir("insertar (aleatorio)", modo, n, n, () -> {
+            ArbolBST arbol = new ArbolBST(balanceado);
+            return () -> {
+                for (Libro libro : aleatorios) arbol.insertar(libro);
+                return arbol.altura();
+            };
+        });
+
+        if (balanceado || n <= MAX_SIMPLE_ORDENADO) {
+            medir("insertar (ordenado)", modo, n, n, () -> {
+                ArbolBST arbol = new ArbolBST(balanceado);
+                return () -> {
+                    for (Libro libro : ordenados) arbol.insertar(libro);
+                    return arbol.altura();
+                };
+            });
+        } else {
+            System.out.printf("%-22s %-11s %10d %14s%n", "insertar (ordenado)", modo, n, "omitido: O(n²)");
+        }
+
+        List<Libro> listaAleatoria = Arrays.asList(aleatorios);
+        medir("cargarMasivo", modo, n, n, () -> {
+            ArbolBST arbol = new ArbolBST(balanceado);
+            return () -> arbol.cargarMasivo(listaAleatoria).size() + arbol.altura();
+        });
+
+        ArbolBST arbol = new ArbolBST(balanceado);
+        for (Libro libro : aleatorios) arbol.insertar(libro);
+        int consultas = Math.min(n, MAX_CONSULTAS);
+        Random random = new Random(7);
+        String[] autores = new String[consultas];
+        String[] isbns = new String[consultas];
+        String[] categorias = new String[consultas];
+        for (int i = 0; i < consultas; i++) {
+            Libro libro = aleatorios[random.nextInt(n)];
+            autores[i] = libro.getAutor();
+            isbns[i] = libro.getIsbn();
+            categorias[i] = CATEGORIAS[random.nextInt(CATEGORIAS.length)];
+        }
+
+        medir("buscarPorAutor", modo, n, consultas, () -> () -> {
+            long total = 0;
+            for (String autor : autores) total += arbol.buscarPorAutor(autor).size();
+            return total;
+        });
+        medir("buscarPorIsbn", modo, n, consultas, () -> () -> {
+            long total = 0;
+            for (String isbn : isbns) total += arbol.buscarPorIsbn(isbn).getAnioPublicacion();
+            return total;
+        });
+        int consultasCategoria = Math.max(1, Math.min(consultas, 1000));
+        medir("buscarPorCategoria", modo, n, consultasCategoria, () -> () -> {
+            long total = 0;
+            for (int i = 0; i < consultasCategoria; i++) total += arbol.buscarPorCategoria(categorias[i]).size();
+            return total;
+        });
+
+        medir("recorridoInOrden", modo, n, 1, () -> () -> arbol.recorridoInOrden().size());
+        medir("recorridoPreOrden", modo, n, 1, () -> () -> arbol.recorridoPreOrden().size());
+        medir("recorridoPostOrden", modo, n, 1, () -> () -> arbol.recorridoPostOrden().size());
+
+        int eliminaciones = Math.min(n, MAX_ELIMINACIONES);
+        List<Libro> eliminados = new ArrayList<>(eliminaciones);
+        Random azarEliminacion = new Random(11);
+        medir("eliminarPorAutor", modo, n, eliminaciones, () -> {
+            // se reinsertan (sin medir) los libros eliminados en la iteración anterior
+            for (Libro libro : eliminados) arbol.insertar(libro);
+            eliminados.clear();
+            Set<Integer> elegidos = new HashSet<>();
+            while (elegidos.size() < eliminaciones) elegidos.add(azarEliminacion.nextInt(n));
+            for (int i : elegidos) eliminados.add(aleatorios[i]);
+            return () -> {
+                for (Libro libro : eliminados) arbol.eliminarPorAutor(libro.getAutor());
+                return arbol.contarNodos();
+            };
+        });
+    }
+
+    static void medir(String nombre, String modo, int n, int operaciones, Supplier<Iteracion> preparacion) {
+        for (int i = 0; i < ITERACIONES_CALENTAMIENTO; i++) {
+            sumidero += preparacion.get().ejecutar();
+        }
+        double[] nsPorOperacion = new double[ITERACIONES_MEDIDAS];
+        for (int i = 0; i < ITERACIONES_MEDIDAS; i++) {
+            Iteracion iteracion = preparacion.get();
+            long inicio = System.nanoTime();
+            sumidero += iteracion.ejecutar();
+            nsPorOperacion[i] = (System.nanoTime() - inicio) / (double) operaciones;
+        }
+        double media = Arrays.stream(nsPorOperacion).average().orElse(0);
+        double varianza = Arrays.stream(nsPorOperacion).map(x -> (x - media) * (x - media)).average().orElse(0);
+        System.out.printf("%-22s %-11s %10d %14s %16.0f%n", nombre, modo, n,
+                String.format("%.1f ± %.1f", media, Math.sqrt(varianza)), 1e9 / media);
+    }
+
+    /**
+     * Genera n libros con apellidos únicos pseudoaleatorios.
+     */
+    static Libro[] generarLibros(int n, Random random) {
+        Libro[] libros = new Libro[n];
+        for (int i = 0; i < n; i++) {
+            String apellido = Long.toString(random.nextLong() & Long.MAX_VALUE, 36) + i;
+            libros[i] = new Libro("isbn-" + i, "Título " + i, apellido + ", Nombre", "Editorial " + (i % 50),
+                    1900 + random.nextInt(125), CATEGORIAS[random.nextInt(CATEGORIAS.length)]);
+        }
+        return libros;
+    }
+
+    private static String apellido(String autor) {
+        return autor.substring(0, autor.indexOf(',')).toLowerCase();
+    }
+}
@@ -0,0 +1,169 @@
+package benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import modelo.Libro;
+import servicio.BibliotecaService;
+import vista.ServidorHttp;
+
+/**
+ * Generador de carga para {@link ServidorHttp}: levanta el servidor en un puerto libre de
+ * localhost sobre un catálogo sintético y lanza muchos clientes concurrentes en lazo cerrado
+ * (cada cliente manda su siguiente petición cuando recibe la respuesta anterior).
+ *
+ * Los clientes son asíncronos (HttpClient.sendAsync), así que miles de ellos no necesitan
+ * miles de hilos del lado del generador. Mezcla: 60% búsqueda por ISBN, 20% por autor,
+ * 10% por categoría y 10% préstamo + devolución. Cada cliente presta solo su propio
+ * ejemplar, así que un 409 (préstamo doble) o un 5xx indican un error del servidor.
+ *
+ * Uso: java -Xmx2g benchmark.CargaHttp [clientes] [segundos] [libros]
+ */
+public class CargaHttp {
+
+    /** Latencias de un cliente; cada cliente es secuencial, no hace falta sincronizar. */
+    private static final class Cliente {
+        final int id;
+        final Random random;
+        long[] latencias = new long[1024];
+        int cantidad;
+
+        Cliente(int id) {
+            this.id = id;
+            this.random = new Random(id);
+        }
+
+        void registrar(long nanos) {
+            if (cantidad == latencias.length) latencias = Arrays.copyOf(latencias, cantidad * 2);
+            latencias[cantidad++] = nanos;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int clientes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int n = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        if (n < clientes) throw new IllegalArgumentException("Se necesita al menos un libro por cliente");
+        // como en ServidorHttp.main: sin TCP_NODELAY el ACK retardado domina la latencia medida
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        BibliotecaService servicio = new BibliotecaService(true);
+        Libro[] catalogo = BenchmarkCatalogo.generarLibros(n, new Random(42));
+        servicio.cargarMasivo(List.of(catalogo).iterator());
+        ServidorHttp servidor = ServidorHttp.iniciar(servicio, 0);
+        String base = "http://localhost:" + servidor.puerto();
+
+        ExecutorService hilosCliente = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(hilosCliente)
+                .build();
+
+        AtomicLongArray porCodigo = new AtomicLongArray(600);
+        LongAdder fallos = new LongAdder();
+        CountDownLatch terminados = new CountDownLatch(clientes);
+        long fin = System.nanoTime() + segundos * 1_000_000_000L;
+        Cliente[] todos = new Cliente[clientes];
+        long inicio = System.nanoTime();
+        for (int c = 0; c < clientes; c++) {
+            todos[c] = new Cliente(c);
+            siguiente(http, base, catalogo, todos[c], fin, porCodigo, fallos, terminados);
+        }
+        terminados.await();
+        double transcurrido = (System.nanoTime() - inicio) / 1e9;
+        servidor.detener();
+        hilosCliente.shutdown();
+
+        long total = 0;
+        for (Cliente cliente : todos) total += cliente.cantidad;
+        long[] latencias = new long[(int) total];
+        int k = 0;
+        for (Cliente cliente : todos) {
+            System.arraycopy(cliente.latencias, 0, latencias, k, cliente.cantidad);
+            k += cliente.cantidad;
+        }
+        Arrays.sort(latencias);
+        System.out.printf("clientes=%d peticiones=%d en %.1fs -> %.0f pet/s%n", clientes, total, transcurrido, total / transcurrido);
+        System.out.printf("latencia p50=%.2fms p99=%.2fms p99.9=%.2fms máx=%.2fms%n",
+                percentil(latencias, 50), percentil(latencias, 99), percentil(latencias, 99.9), percentil(latencias, 100));
+        StringBuilder codigos = new StringBuilder("códigos:");
+        for (int codigo = 0; codigo < porCodigo.length(); codigo++) {
+            if (porCodigo.get(codigo) > 0) codigos.append(' ').append(codigo).append('=').append(porCodigo.get(codigo));
+        }
+        System.out.println(codigos + (fallos.sum() > 0 ? " fallos de conexión=" + fallos.sum() : ""));
+        long erroresServidor = porCodigo.get(409);
+        for (int codigo = 500; codigo < 600; codigo++) erroresServidor += porCodigo.get(codigo);
+        if (erroresServidor > 0) throw new AssertionError("El servidor respondió " + erroresServidor + " errores");
+    }
+
+    /**
+     * Envía la siguiente petición del cliente y, al recibir la respuesta, encadena la que sigue
+     * hasta que se cumple el tiempo.
+     */
+    private static void siguiente(HttpClient http, String base, Libro[] catalogo, Cliente cliente, long fin,
+                                  AtomicLongArray porCodigo, LongAdder fallos, CountDownLatch terminados) {
+        if (System.nanoTime() >= fin) {
+            terminados.countDown();
+            return;
+        }
+        int dado = cliente.random.nextInt(100);
+        Libro libro = catalogo[cliente.random.nextInt(catalogo.length)];
+        long inicio = System.nanoTime();
+        CompletableFuture<Integer> peticion;
+        if (dado < 60) {
+            peticion = enviar(http, "GET", base + "/libros?isbn=" + codificar(libro.getIsbn()));
+        } else if (dado < 80) {
+            peticion = enviar(http, "GET", base + "/libros?autor=" + codificar(libro.getAutor()));
+        } else if (dado < 90) {
+            peticion = enviar(http, "GET", base + "/libros?categoria=" + codificar(libro.getCategoria()));
+        } else {
+            String propio = codificar(catalogo[cliente.id].getIsbn());
+            peticion = enviar(http, "POST", base + "/prestamos?isbn=" + propio + "&prestatario=cliente-" + cliente.id)
+                    .thenCompose(codigo -> {
+                        porCodigo.incrementAndGet(codigo);
+                        return enviar(http, "POST", base + "/devoluciones?isbn=" + propio);
+                    });
+        }
+        peticion.whenComplete((codigo, error) -> {
+            cliente.registrar(System.nanoTime() - inicio);
+            if (error != null) fallos.increment();
+            else porCodigo.incrementAndGet(codigo);
+            siguiente(http, base, catalogo, cliente, fin, porCodigo, fallos, terminados);
+        });
+    }
+
+    private static CompletableFuture<Integer> enviar(HttpClient http, String metodo, String url) {
+        HttpRequest peticion = HttpRequest.newBuilder(URI.create(url))
+                .method(metodo, HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofSeconds(30))
+                .build();
+        return http.sendAsync(peticion, HttpResponse.BodyHandlers.discarding()).thenApply(HttpResponse::statusCode);
+    }
+
+    private static String codificar(String valor) {
+        return URLEncoder.encode(valor, StandardCharsets.UTF_8);
+    }
+
+    private static double percentil(long[] ordenados, double percentil) {
+        if (ordenados.length == 0) return 0;
+        int i = (int) Math.ceil(percentil / 100 * ordenados.length) - 1;
+        return ordenados[Math.max(0, i)] / 1e6;
+    }
+}
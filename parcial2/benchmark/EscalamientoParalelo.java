@@ -0,0 +1,61 @@
+package benchmark;
+
+import estructura.ArbolBST;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import modelo.Libro;
+
+/**
+ * Escalamiento de los recorridos paralelos del catálogo (Spliterator por subárboles):
+ * ejecuta el mismo filtrado en ForkJoinPools de 1 a N hilos (potencias de dos y N) y reporta el tiempo por
+ * recorrido completo, con resultado ordenado y sin ordenar.
+ *
+ * Uso: java -Xmx4g benchmark.EscalamientoParalelo [libros] [maxHilos]
+ */
+public class EscalamientoParalelo {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int maxHilos = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        ArbolBST arbol = new ArbolBST(true);
+        Libro[] libros = BenchmarkCatalogo.generarLibros(n, new Random(42));
+        arbol.cargarMasivo(List.of(libros));
+        Random random = new Random(5);
+        for (Libro libro : libros) {
+            if (random.nextInt(4) == 0) libro.prestar("Lector");
+        }
+        Predicate<Libro> criterio = libro -> libro.isDisponible() && "Historia".equals(libro.getCategoria());
+
+        System.out.printf("%-22s %-11s %10s %14s %16s%n", "benchmark", "hilos", "n", "ns/op", "ops/s");
+        BenchmarkCatalogo.medir("filtrar (secuencial)", "1", n, 1,
+                () -> () -> arbol.stream(false).filter(criterio).count());
+        for (int hilos = 1; ; hilos = Math.min(hilos * 2, maxHilos)) {
+            ForkJoinPool pool = new ForkJoinPool(hilos);
+            String modo = String.valueOf(hilos);
+            BenchmarkCatalogo.medir("filtrar (ordenado)", modo, n, 1, () -> () -> enPool(pool,
+                    () -> arbol.stream(true).filter(criterio).collect(Collectors.toList()).size()));
+            BenchmarkCatalogo.medir("filtrar (sin orden)", modo, n, 1, () -> () -> enPool(pool,
+                    () -> arbol.stream(true).unordered().filter(criterio).collect(Collectors.toList()).size()));
+            pool.shutdown();
+            if (hilos == maxHilos) break;
+        }
+    }
+
+    /** Las tareas de un stream paralelo corren en el pool desde el que se lanza la operación terminal. */
+    private static long enPool(ForkJoinPool pool, Callable<Integer> tarea) {
+        try {
+            return pool.submit(tarea).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+}
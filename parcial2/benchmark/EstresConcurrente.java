@@ -0,0 +1,143 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import modelo.Libro;
+import servicio.BibliotecaService;
+
+/**
+ * Prueba de estrés multihilo de BibliotecaService.
+ *
+ * 1. Carrera de préstamo: todos los hilos intentan prestar el mismo ejemplar a la vez;
+ *    exactamente uno debe conseguirlo.
+ * 2. Carga mixta (búsquedas, préstamos/devoluciones, altas y bajas) con 1..N hilos.
+ *    Mide el throughput y al final verifica que ningún ejemplar quedó prestado dos veces
+ *    y que los contadores del servicio coinciden con el estado real de los libros.
+ *
+ * Uso: java -Xmx2g benchmark.EstresConcurrente [libros] [segundosPorCorrida] [maxHilos]
+ */
+public class EstresConcurrente {
+
+    public static void main(String[] args) throws InterruptedException {
+        int libros = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int maxHilos = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        carreraDePrestamo(Math.max(2, maxHilos));
+
+        System.out.printf("%-7s %16s %12s%n", "hilos", "ops/s", "préstamos");
+        for (int hilos = 1; hilos <= maxHilos; hilos *= 2) {
+            cargaMixta(libros, hilos, segundos);
+        }
+    }
+
+    private static void carreraDePrestamo(int hilos) throws InterruptedException {
+        BibliotecaService servicio = new BibliotecaService(true);
+        servicio.registrarLibro(new Libro("isbn-unico", "Rayuela", "Cortázar, Julio", "Sudamericana", 1963, "Literatura"));
+        AtomicInteger exitos = new AtomicInteger();
+        CountDownLatch salida = new CountDownLatch(1);
+        Thread[] trabajadores = new Thread[hilos];
+        for (int i = 0; i < hilos; i++) {
+            String prestatario = "Mostrador " + i;
+            trabajadores[i] = new Thread(() -> {
+                esperar(salida);
+                try {
+                    servicio.prestarLibro("isbn-unico", prestatario);
+                    exitos.incrementAndGet();
+                } catch (IllegalStateException ex) {
+                    // ya prestado por otro mostrador
+                }
+            });
+            trabajadores[i].start();
+        }
+        salida.countDown();
+        for (Thread t : trabajadores) t.join();
+        if (exitos.get() != 1 || servicio.totalPrestados() != 1) {
+            throw new AssertionError("El ejemplar se prestó " + exitos.get() + " veces");
+        }
+        System.out.println("Carrera de préstamo con " + hilos + " hilos: 1 préstamo exitoso (OK)");
+    }
+
+    private static void cargaMixta(int n, int hilos, int segundos) throws InterruptedException {
+        BibliotecaService servicio = new BibliotecaService(true);
+        Libro[] catalogo = BenchmarkCatalogo.generarLibros(n, new Random(42));
+        for (Libro libro : catalogo) servicio.registrarLibro(libro);
+        // cuántas veces está prestado cada ejemplar según los préstamos exitosos
+        AtomicIntegerArray prestadoPorLibro = new AtomicIntegerArray(n);
+        LongAdder operaciones = new LongAdder();
+        CountDownLatch salida = new CountDownLatch(1);
+        long fin = System.nanoTime() + segundos * 1_000_000_000L;
+
+        Thread[] trabajadores = new Thread[hilos];
+        for (int h = 0; h < hilos; h++) {
+            Random random = new Random(h);
+            trabajadores[h] = new Thread(() -> {
+                esperar(salida);
+                long locales = 0;
+                while ((locales & 1023) != 0 || System.nanoTime() < fin) {
+                    int i = random.nextInt(n);
+                    Libro libro = catalogo[i];
+                    int dado = random.nextInt(100);
+                    try {
+                        if (dado < 60) {
+                            servicio.buscarPorAutor(libro.getAutor());
+                        } else if (dado < 80) {
+                            servicio.buscarPorIsbn(libro.getIsbn());
+                        } else if (dado < 90) {
+                            servicio.prestarLibro(libro.getIsbn(), "Lector " + i);
+                            if (prestadoPorLibro.incrementAndGet(i) > 1) {
+                                throw new AssertionError("Préstamo doble de " + libro.getIsbn());
+                            }
+                        } else if (dado < 99) {
+                            // decrementar antes de devolver: tras devolver otro hilo puede volver a prestarlo
+                            prestadoPorLibro.decrementAndGet(i);
+                            try {
+                                servicio.devolverLibro(libro.getIsbn());
+                            } catch (IllegalStateException | IllegalArgumentException ex) {
+                                prestadoPorLibro.incrementAndGet(i);
+                                throw ex;
+                            }
+                        } else {
+                            servicio.buscarPorCategoria(libro.getCategoria());
+                        }
+                    } catch (IllegalStateException | IllegalArgumentException ex) {
+                        // préstamo de un libro ya prestado o devolución de uno disponible
+                    }
+                    locales++;
+                }
+                operaciones.add(locales);
+            });
+            trabajadores[h].start();
+        }
+        long inicio = System.nanoTime();
+        salida.countDown();
+        for (Thread t : trabajadores) t.join();
+        double transcurrido = (System.nanoTime() - inicio) / 1e9;
+
+        long prestadosReales = 0;
+        for (int i = 0; i < n; i++) {
+            int estado = prestadoPorLibro.get(i);
+            boolean prestado = !catalogo[i].isDisponible();
+            if (estado != (prestado ? 1 : 0)) {
+                throw new AssertionError("Estado inconsistente en " + catalogo[i].getIsbn());
+            }
+            if (prestado) prestadosReales++;
+        }
+        if (servicio.totalPrestados() != prestadosReales
+                || servicio.totalDisponibles() != n - prestadosReales) {
+            throw new AssertionError("Contadores del servicio desfasados");
+        }
+        System.out.printf("%-7d %16.0f %12d%n", hilos, operaciones.sum() / transcurrido, prestadosReales);
+    }
+
+    private static void esperar(CountDownLatch salida) {
+        try {
+            salida.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,163 +1,618 @@
 package estructura;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Objects;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import modelo.Libro;
 import modelo.NodoBST;
 
 
 /**
  * Árbol Binario de Búsqueda ordenado por apellido del autor.
+ * Cada nodo agrupa todos los libros cuyos autores comparten apellido y está aumentado
+ * con la altura y el tamaño de su subárbol: contarNodos y altura son O(1), y la posición
+ * de un autor o el autor en una posición dada se obtienen en un solo descenso.
+ * En modo balanceado se comporta como un árbol AVL: cada inserción y eliminación
+ * reequilibra el camino recorrido, de modo que la altura se mantiene en O(log n)
+ * aunque los libros lleguen ordenados por apellido.
+ * Además mantiene un índice hash ISBN -> nodo para que la búsqueda por ISBN sea O(1)
+ * y un índice invertido por categoría para que las consultas por categoría cuesten
+ * O(tamaño del resultado), un índice de palabras de título para búsquedas de texto y un
+ * trie de apellidos sin tildes para autocompletar y tolerar errores de tipeo.
  */
 public class ArbolBST {
+    /** A partir de este tamaño la carga masiva y los listados completos trabajan en paralelo. */
+    private static final int UMBRAL_PARALELO = 1 << 13;
+
     private NodoBST raiz;
+    private final boolean balanceado;
+    private final Map<String, NodoBST> indiceIsbn;
+    private final IndiceCategorias indiceCategorias;
+    private final IndiceTexto indiceTexto;
+    private final IndiceAutores indiceAutores;
+    private final IndiceAtributos indiceAtributos;
+    private int totalLibros;
+    /** Recibe los nodos visitados en cada descenso; null (lo habitual) no mide nada. */
+    private volatile IntConsumer observadorDescensos;
 
     public ArbolBST() {
+        this(false);
+    }
+
+    public ArbolBST(boolean balanceado) {
         this.raiz = null;
+        this.balanceado = balanceado;
+        this.indiceIsbn = new HashMap<>();
+        this.indiceCategorias = new IndiceCategorias();
+        this.indiceTexto = new IndiceTexto();
+        this.indiceAutores = new IndiceAutores();
+        this.indiceAtributos = new IndiceAtributos();
+    }
+
+    public boolean isBalanceado() {
+        return balanceado;
     }
 
     /**
-     * Inserta un libro en el árbol.
-     * @throws IllegalArgumentException si el autor ya existe (mismo apellido exacto, case-insensitive).
+     * Inserta un libro en el árbol. Si ya existe un nodo con el mismo apellido
+     * (case-insensitive) el libro se agrega a ese nodo.
+     * @throws IllegalArgumentException si el ISBN ya está registrado.
      */
     public void insertar(Libro libro) {
         if (libro == null) throw new IllegalArgumentException("Libro nulo");
+        if (libro.getIsbn() != null && indiceIsbn.containsKey(libro.getIsbn())) {
+            throw new IllegalArgumentException("ISBN duplicado: " + libro.getIsbn());
+        }
+        // todas las claves se calculan antes de tocar el árbol: si alguna falla no queda un alta a medias
         String clave = claveAutor(libro.getAutor());
-        raiz = insertarRec(raiz, libro, clave);
+        IndiceAtributos.Claves claves = IndiceAtributos.claves(libro);
+        insertarNodo(libro, clave);
+        indiceCategorias.agregar(libro);
+        indiceTexto.agregar(libro);
+        indiceAtributos.agregar(libro, claves);
+        indiceAutores.agregar(clave, 1);
+        totalLibros++;
     }
 
-    private NodoBST insertarRec(NodoBST nodo, Libro libro, String clave) {
-        if (nodo == null) {
-            return new NodoBST(libro);
-        }
-        String claveNodo = claveAutor(nodo.libro.getAutor());
-        int cmp = clave.compareToIgnoreCase(claveNodo);
-        if (cmp < 0) {
-            nodo.izquierdo = insertarRec(nodo.izquierdo, libro, clave);
-        } else if (cmp > 0) {
-            nodo.derecho = insertarRec(nodo.derecho, libro, clave);
-        } else {
-            // mismo apellido -> consideramos duplicado para el propósito de la estructura
-            throw new IllegalArgumentException("Autor duplicado (apellido igual). Apellido: " + clave);
+    /**
+     * Inserción iterativa: desciende guardando la ruta y luego la recompone de abajo hacia arriba.
+     */
+    private void insertarNodo(Libro libro, String clave) {
+        Deque<NodoBST> ruta = new ArrayDeque<>(alturaNodo(raiz) + 1);
+        NodoBST actual = raiz;
+        while (actual != null) {
+            int cmp = clave.compareTo(actual.clave);
+            if (cmp == 0) {
+                // mismo apellido -> el libro se agrupa en el nodo existente, la forma del árbol no cambia
+                actual.agregar(libro);
+                indexarIsbn(libro, actual);
+                informarDescenso(ruta.size() + 1);
+                return;
+            }
+            ruta.push(actual);
+            actual = cmp < 0 ? actual.izquierdo : actual.derecho;
         }
-        return nodo;
+        informarDescenso(ruta.size());
+        NodoBST nuevo = new NodoBST(libro, clave);
+        indexarIsbn(libro, nuevo);
+        NodoBST padre = ruta.peek();
+        if (padre == null) {
+            raiz = nuevo;
+            return;
+        }
+        if (clave.compareTo(padre.clave) < 0) padre.izquierdo = nuevo;
+        else padre.derecho = nuevo;
+        recomponer(ruta);
     }
 
     /**
-     * Buscar libro(s) por autor: retorna lista con coincidencias exactas por apellido (case-insensitive).
+     * Buscar libro(s) por autor: retorna todos los libros del nodo cuyo apellido coincide
+     * exactamente (case-insensitive). Un único descenso por el árbol.
      */
     public List<Libro> buscarPorAutor(String autor) {
-        List<Libro> resultados = new ArrayList<>();
-        if (autor == null || autor.trim().isEmpty()) return resultados;
-        buscarPorAutorRec(raiz, claveAutor(autor), resultados);
-        return resultados;
-    }
-
-    private void buscarPorAutorRec(NodoBST nodo, String clave, List<Libro> resultados) {
-        if (nodo == null) return;
-        String claveNodo = claveAutor(nodo.libro.getAutor());
-        int cmp = clave.compareToIgnoreCase(claveNodo);
-        if (cmp < 0) {
-            buscarPorAutorRec(nodo.izquierdo, clave, resultados);
-        } else if (cmp > 0) {
-            buscarPorAutorRec(nodo.derecho, clave, resultados);
-        } else {
-            // coincidencia exacta en apellido
-            resultados.add(nodo.libro);
-            // No tenemos duplicados de clave en distintos nodos (modelo actual los previene),
-            // pero si quisieras autores con mismo apellido pero distintos nombres, habría que recorrer ambos sub-árboles.
+        if (autor == null || autor.trim().isEmpty()) return new ArrayList<>();
+        NodoBST nodo = buscarNodo(claveAutor(autor));
+        return nodo != null ? nodo.comoLista() : new ArrayList<>();
+    }
+
+    /**
+     * Como {@link #buscarPorAutor} pero sin distinguir tildes: "Cortazar" encuentra los
+     * libros de "Cortázar" (y de "Cortazar", si ambos apellidos existen).
+     */
+    public List<Libro> buscarPorAutorSinTildes(String autor) {
+        List<Libro> resultado = new ArrayList<>();
+        if (autor == null || autor.trim().isEmpty()) return resultado;
+        for (String clave : indiceAutores.exactas(claveAutor(autor))) buscarNodo(clave).agregarA(resultado);
+        return resultado;
+    }
+
+    /**
+     * Autores (uno por apellido) cuyo apellido empieza por el prefijo, sin distinguir
+     * tildes ni mayúsculas, en orden alfabético y como mucho {@code limite}.
+     */
+    public List<String> autocompletarAutor(String prefijo, int limite) {
+        List<String> autores = new ArrayList<>();
+        if (prefijo == null) return autores;
+        for (String clave : indiceAutores.conPrefijo(prefijo.trim(), limite)) autores.add(buscarNodo(clave).primero().getAutor());
+        return autores;
+    }
+
+    /**
+     * Autores (uno por apellido) cuyo apellido está a distancia de edición menor o igual a
+     * {@code maxDistancia} del apellido buscado, sin distinguir tildes: "Borjes" encuentra
+     * "Borges" con distancia 1. Ordenados del más parecido al menos parecido.
+     */
+    public List<String> buscarAutorAproximado(String autor, int maxDistancia) {
+        List<String> autores = new ArrayList<>();
+        if (autor == null || autor.trim().isEmpty() || maxDistancia < 0) return autores;
+        for (IndiceAutores.Coincidencia coincidencia : indiceAutores.aproximadas(claveAutor(autor), maxDistancia)) {
+            autores.add(buscarNodo(coincidencia.clave).primero().getAutor());
         }
+        return autores;
+    }
+
+    private NodoBST buscarNodo(String clave) {
+        NodoBST actual = raiz;
+        int visitados = 0;
+        while (actual != null) {
+            visitados++;
+            int cmp = clave.compareTo(actual.clave);
+            if (cmp == 0) break;
+            actual = cmp < 0 ? actual.izquierdo : actual.derecho;
+        }
+        informarDescenso(visitados);
+        return actual;
+    }
+
+    private void informarDescenso(int visitados) {
+        IntConsumer observador = observadorDescensos;
+        if (observador != null) observador.accept(visitados);
     }
 
     /**
-     * Eliminar por autor (apellido). Lanza IllegalArgumentException si no existe.
+     * Instala (o quita, con null) el observador que recibe cuántos nodos visitó cada
+     * descenso por apellido: búsquedas, eliminaciones e inserciones.
+     */
+    public void observarDescensos(IntConsumer observador) {
+        this.observadorDescensos = observador;
+    }
+
+    /**
+     * Eliminar por autor (apellido): quita el nodo con todos sus libros.
+     * Lanza IllegalArgumentException si no existe.
      */
     public void eliminarPorAutor(String autor) {
         if (autor == null || autor.trim().isEmpty()) {
             throw new IllegalArgumentException("Autor inválido");
         }
         String clave = claveAutor(autor);
-        if (!existeApellido(clave)) {
+        NodoBST nodo = buscarNodo(clave);
+        if (nodo == null) {
             throw new IllegalArgumentException("Autor no encontrado: " + autor);
         }
-        raiz = eliminarRec(raiz, clave);
+        for (int i = 0; i < nodo.cantidad; i++) {
+            indiceCategorias.quitar(nodo.libros[i]);
+            indiceTexto.quitar(nodo.libros[i]);
+            indiceAtributos.quitar(nodo.libros[i]);
+        }
+        indiceAutores.quitar(clave, nodo.cantidad);
+        totalLibros -= nodo.cantidad;
+        eliminarNodo(clave);
     }
 
-    private NodoBST eliminarRec(NodoBST nodo, String clave) {
-        if (nodo == null) return null;
-        String claveNodo = claveAutor(nodo.libro.getAutor());
-        int cmp = clave.compareToIgnoreCase(claveNodo);
-        if (cmp < 0) {
-            nodo.izquierdo = eliminarRec(nodo.izquierdo, clave);
-        } else if (cmp > 0) {
-            nodo.derecho = eliminarRec(nodo.derecho, clave);
+    /**
+     * Elimina un único título de un autor. Si era el último libro del apellido
+     * se elimina también el nodo. Lanza IllegalArgumentException si no existe.
+     */
+    public void eliminarLibro(String autor, String isbn) {
+        if (autor == null || autor.trim().isEmpty()) {
+            throw new IllegalArgumentException("Autor inválido");
+        }
+        if (isbn == null || isbn.trim().isEmpty()) {
+            throw new IllegalArgumentException("ISBN inválido");
+        }
+        String clave = claveAutor(autor);
+        NodoBST nodo = buscarNodo(clave);
+        if (nodo == null) {
+            throw new IllegalArgumentException("Autor no encontrado: " + autor);
+        }
+        if (nodo.cantidad == 1) {
+            if (!isbn.trim().equals(nodo.primero().getIsbn())) {
+                throw new IllegalArgumentException("El autor " + autor + " no tiene el ISBN: " + isbn);
+            }
+            indiceCategorias.quitar(nodo.primero());
+            indiceTexto.quitar(nodo.primero());
+            indiceAtributos.quitar(nodo.primero());
+            indiceAutores.quitar(clave, 1);
+            totalLibros--;
+            eliminarNodo(clave);
+            return;
+        }
+        Libro quitado = nodo.quitarPorIsbn(isbn.trim());
+        if (quitado == null) {
+            throw new IllegalArgumentException("El autor " + autor + " no tiene el ISBN: " + isbn);
+        }
+        indiceIsbn.remove(quitado.getIsbn(), nodo);
+        indiceCategorias.quitar(quitado);
+        indiceTexto.quitar(quitado);
+        indiceAtributos.quitar(quitado);
+        indiceAutores.quitar(clave, 1);
+        totalLibros--;
+    }
+
+    /**
+     * Eliminación iterativa del nodo con la clave indicada (debe existir).
+     */
+    private void eliminarNodo(String clave) {
+        Deque<NodoBST> ruta = new ArrayDeque<>(alturaNodo(raiz) + 1);
+        NodoBST nodo = raiz;
+        int cmp;
+        while ((cmp = clave.compareTo(nodo.clave)) != 0) {
+            ruta.push(nodo);
+            nodo = cmp < 0 ? nodo.izquierdo : nodo.derecho;
+        }
+        desindexarIsbn(nodo);
+        if (nodo.izquierdo == null || nodo.derecho == null) {
+            NodoBST hijo = nodo.izquierdo != null ? nodo.izquierdo : nodo.derecho;
+            reemplazarHijo(ruta.peek(), nodo, hijo);
         } else {
-            // nodo a eliminar
-            if (nodo.izquierdo == null && nodo.derecho == null) {
-                return null;
-            } else if (nodo.izquierdo == null) {
-                return nodo.derecho;
-            } else if (nodo.derecho == null) {
-                return nodo.izquierdo;
+            // dos hijos: se quita el mínimo del subárbol derecho y su contenido pasa a este nodo.
+            // Los ISBN del sucesor se reindexan apuntando a este nodo.
+            ruta.push(nodo);
+            NodoBST sucesor = nodo.derecho;
+            while (sucesor.izquierdo != null) {
+                ruta.push(sucesor);
+                sucesor = sucesor.izquierdo;
+            }
+            reemplazarHijo(ruta.peek(), sucesor, sucesor.derecho);
+            nodo.clave = sucesor.clave;
+            nodo.libros = sucesor.libros;
+            nodo.cantidad = sucesor.cantidad;
+            indexarIsbn(nodo);
+        }
+        recomponer(ruta);
+    }
+
+    private void reemplazarHijo(NodoBST padre, NodoBST hijo, NodoBST reemplazo) {
+        if (padre == null) raiz = reemplazo;
+        else if (padre.izquierdo == hijo) padre.izquierdo = reemplazo;
+        else padre.derecho = reemplazo;
+    }
+
+    /**
+     * Recorre la ruta (tope = nodo más profundo) hacia la raíz actualizando altura y tamaño
+     * de cada ancestro y, en modo balanceado, aplicando las rotaciones AVL necesarias.
+     */
+    private void recomponer(Deque<NodoBST> ruta) {
+        NodoBST original = null;
+        NodoBST subarbol = raiz;
+        while (!ruta.isEmpty()) {
+            NodoBST nodo = ruta.pop();
+            if (original != null) {
+                if (nodo.izquierdo == original) nodo.izquierdo = subarbol;
+                else nodo.derecho = subarbol;
+            }
+            original = nodo;
+            subarbol = balanceado ? balancear(nodo) : actualizar(nodo);
+        }
+        raiz = subarbol;
+    }
+
+    /**
+     * Carga masiva: calcula la clave de cada libro y ordena una sola vez (en paralelo si la
+     * carga es grande), fusiona en una pasada con los nodos existentes agrupando los apellidos
+     * repetidos y reconstruye el árbol perfectamente balanceado de abajo hacia arriba en O(n).
+     * El orden relativo de los libros de un mismo apellido se conserva.
+     * @return libros rechazados por tener un ISBN ya registrado o repetido dentro de la carga.
+     */
+    public List<Libro> cargarMasivo(List<Libro> libros) {
+        for (Libro libro : libros) {
+            if (libro == null) throw new IllegalArgumentException("Libro nulo");
+        }
+        int n = libros.size();
+        Entrada[] entradas = new Entrada[n];
+        Comparator<Entrada> porClave = Comparator.comparing(entrada -> entrada.clave);
+        if (n >= UMBRAL_PARALELO) {
+            Arrays.parallelSetAll(entradas, i -> new Entrada(libros.get(i)));
+            Arrays.parallelSort(entradas, porClave);
+        } else {
+            Arrays.setAll(entradas, i -> new Entrada(libros.get(i)));
+            Arrays.sort(entradas, porClave);
+        }
+
+        List<NodoBST> existentes = nodosEnOrden();
+        List<NodoBST> nodos = new ArrayList<>(existentes.size() + n);
+        List<Libro> rechazados = new ArrayList<>();
+        int e = 0;
+        NodoBST ultimo = null;
+        for (Entrada entrada : entradas) {
+            while (e < existentes.size() && existentes.get(e).clave.compareTo(entrada.clave) < 0) {
+                ultimo = existentes.get(e++);
+                nodos.add(ultimo);
+            }
+            Libro libro = entrada.libro;
+            if (libro.getIsbn() != null && indiceIsbn.containsKey(libro.getIsbn())) {
+                rechazados.add(libro);
+                continue;
+            }
+            if (ultimo != null && ultimo.clave.equals(entrada.clave)) {
+                ultimo.agregar(libro);
+            } else if (e < existentes.size() && existentes.get(e).clave.equals(entrada.clave)) {
+                ultimo = existentes.get(e++);
+                nodos.add(ultimo);
+                ultimo.agregar(libro);
             } else {
-                // dos hijos: reemplazar por mínimo del subárbol derecho
-                NodoBST sucesor = encontrarMinNodo(nodo.derecho);
-                nodo.libro = sucesor.libro;
-                nodo.derecho = eliminarRec(nodo.derecho, claveAutor(sucesor.libro.getAutor()));
+                ultimo = new NodoBST(libro, entrada.clave);
+                nodos.add(ultimo);
             }
+            indexarIsbn(libro, ultimo);
+            indiceCategorias.agregar(libro);
+            indiceTexto.agregar(libro);
+            indiceAtributos.agregar(libro, entrada.claves);
+            indiceAutores.agregar(entrada.clave, 1);
+            totalLibros++;
         }
-        return nodo;
+        while (e < existentes.size()) nodos.add(existentes.get(e++));
+        raiz = construirBalanceado(nodos, 0, nodos.size() - 1);
+        return rechazados;
     }
 
-    private NodoBST encontrarMinNodo(NodoBST nodo) {
-        NodoBST actual = nodo;
-        while (actual != null && actual.izquierdo != null) {
-            actual = actual.izquierdo;
+    private static final class Entrada {
+        final String clave;
+        final IndiceAtributos.Claves claves;
+        final Libro libro;
+
+        Entrada(Libro libro) {
+            this.clave = claveAutor(libro.getAutor());
+            this.claves = IndiceAtributos.claves(libro);
+            this.libro = libro;
         }
-        return actual;
+    }
+
+    private NodoBST construirBalanceado(List<NodoBST> nodos, int desde, int hasta) {
+        if (desde > hasta) return null;
+        int medio = (desde + hasta) >>> 1;
+        NodoBST nodo = nodos.get(medio);
+        nodo.izquierdo = construirBalanceado(nodos, desde, medio - 1);
+        nodo.derecho = construirBalanceado(nodos, medio + 1, hasta);
+        return actualizar(nodo);
     }
 
     /**
-     * Recorridos
+     * Nodos del árbol en orden alfabético de clave (recorrido iterativo).
+     */
+    List<NodoBST> nodosEnOrden() {
+        List<NodoBST> nodos = new ArrayList<>(tamanioNodo(raiz));
+        Deque<NodoBST> pila = new ArrayDeque<>();
+        NodoBST actual = raiz;
+        while (actual != null || !pila.isEmpty()) {
+            while (actual != null) {
+                pila.push(actual);
+                actual = actual.izquierdo;
+            }
+            NodoBST nodo = pila.pop();
+            nodos.add(nodo);
+            actual = nodo.derecho;
+        }
+        return nodos;
+    }
+
+    /**
+     * Posición (desde 0) que ocupa el apellido en orden alfabético, o la que ocuparía
+     * si no existe: número de apellidos estrictamente menores. O(altura).
+     */
+    public int posicionAutor(String autor) {
+        String clave = claveAutor(autor);
+        int posicion = 0;
+        NodoBST actual = raiz;
+        while (actual != null) {
+            int cmp = clave.compareTo(actual.clave);
+            if (cmp == 0) return posicion + tamanioNodo(actual.izquierdo);
+            if (cmp < 0) {
+                actual = actual.izquierdo;
+            } else {
+                posicion += tamanioNodo(actual.izquierdo) + 1;
+                actual = actual.derecho;
+            }
+        }
+        return posicion;
+    }
+
+    /**
+     * Libros del autor que ocupa la posición indicada (desde 0) en orden alfabético.
+     * Retorna lista vacía si la posición está fuera de rango. O(altura).
+     */
+    public List<Libro> autorEnPosicion(int posicion) {
+        if (posicion < 0 || posicion >= tamanioNodo(raiz)) return new ArrayList<>();
+        NodoBST actual = raiz;
+        while (true) {
+            int izquierda = tamanioNodo(actual.izquierdo);
+            if (posicion < izquierda) {
+                actual = actual.izquierdo;
+            } else if (posicion == izquierda) {
+                return actual.comoLista();
+            } else {
+                posicion -= izquierda + 1;
+                actual = actual.derecho;
+            }
+        }
+    }
+
+    /**
+     * Balanceo AVL: recalcula la altura del nodo y aplica la rotación simple o doble
+     * que corresponda cuando el factor de balance sale del rango [-1, 1].
+     */
+    private NodoBST balancear(NodoBST nodo) {
+        actualizar(nodo);
+        int factor = factorBalance(nodo);
+        if (factor > 1) {
+            if (factorBalance(nodo.izquierdo) < 0) {
+                nodo.izquierdo = rotarIzquierda(nodo.izquierdo);
+            }
+            return rotarDerecha(nodo);
+        }
+        if (factor < -1) {
+            if (factorBalance(nodo.derecho) > 0) {
+                nodo.derecho = rotarDerecha(nodo.derecho);
+            }
+            return rotarIzquierda(nodo);
+        }
+        return nodo;
+    }
+
+    private NodoBST rotarDerecha(NodoBST nodo) {
+        NodoBST nuevaRaiz = nodo.izquierdo;
+        nodo.izquierdo = nuevaRaiz.derecho;
+        nuevaRaiz.derecho = nodo;
+        actualizar(nodo);
+        actualizar(nuevaRaiz);
+        return nuevaRaiz;
+    }
+
+    private NodoBST rotarIzquierda(NodoBST nodo) {
+        NodoBST nuevaRaiz = nodo.derecho;
+        nodo.derecho = nuevaRaiz.izquierdo;
+        nuevaRaiz.izquierdo = nodo;
+        actualizar(nodo);
+        actualizar(nuevaRaiz);
+        return nuevaRaiz;
+    }
+
+    private NodoBST actualizar(NodoBST nodo) {
+        nodo.altura = 1 + Math.max(alturaNodo(nodo.izquierdo), alturaNodo(nodo.derecho));
+        nodo.tamanio = 1 + tamanioNodo(nodo.izquierdo) + tamanioNodo(nodo.derecho);
+        return nodo;
+    }
+
+    private int factorBalance(NodoBST nodo) {
+        return alturaNodo(nodo.izquierdo) - alturaNodo(nodo.derecho);
+    }
+
+    private static int alturaNodo(NodoBST nodo) {
+        return nodo == null ? 0 : nodo.altura;
+    }
+
+    private static int tamanioNodo(NodoBST nodo) {
+        return nodo == null ? 0 : nodo.tamanio;
+    }
+
+    /**
+     * Recorridos. Todos son iterativos con pila explícita (O(altura) memoria de heap), así que
+     * no desbordan la pila de llamadas aunque el árbol degenere en una lista. Las variantes
+     * forEach entregan cada libro al consumidor sin construir listas intermedias.
      */
     public List<Libro> recorridoInOrden() {
-        List<Libro> lista = new ArrayList<>();
-        inOrdenRec(raiz, lista);
+        List<Libro> lista = new ArrayList<>(totalLibros);
+        forEachInOrden(lista::add);
         return lista;
     }
 
-    private void inOrdenRec(NodoBST nodo, List<Libro> lista) {
-        if (nodo == null) return;
-        inOrdenRec(nodo.izquierdo, lista);
-        lista.add(nodo.libro);
-        inOrdenRec(nodo.derecho, lista);
+    public void forEachInOrden(Consumer<Libro> accion) {
+        forEachInOrden(raiz, accion);
+    }
+
+    static void forEachInOrden(NodoBST raiz, Consumer<Libro> accion) {
+        forEachNodoInOrden(raiz, nodo -> emitir(nodo, accion));
+    }
+
+    static void forEachNodoInOrden(NodoBST raiz, Consumer<NodoBST> accion) {
+        Deque<NodoBST> pila = new ArrayDeque<>();
+        NodoBST actual = raiz;
+        while (actual != null || !pila.isEmpty()) {
+            while (actual != null) {
+                pila.push(actual);
+                actual = actual.izquierdo;
+            }
+            NodoBST nodo = pila.pop();
+            accion.accept(nodo);
+            actual = nodo.derecho;
+        }
+    }
+
+    /**
+     * Libros cuyos apellidos están entre {@code desde} y {@code hasta} (ambos inclusive,
+     * case-insensitive), en orden alfabético. {@code hasta} incluye también los apellidos
+     * que empiezan por él, de modo que ("a", "c") abarca "cortázar". Cualquiera de las
+     * dos cotas puede ser null. El iterador es perezoso y poda los subárboles fuera de rango.
+     */
+    public Iterator<Libro> rangoAutores(String desde, String hasta) {
+        return new IteradorInOrden(raiz, normalizarCota(desde), normalizarCota(hasta), true);
+    }
+
+    /**
+     * Libros cuyos apellidos empiezan por el prefijo (case-insensitive), en orden alfabético.
+     */
+    public Iterator<Libro> prefijoAutor(String prefijo) {
+        String cota = normalizarCota(prefijo);
+        if (cota == null) cota = "";
+        return new IteradorInOrden(raiz, cota, cota, true);
+    }
+
+    static String normalizarCota(String cota) {
+        if (cota == null || cota.trim().isEmpty()) return null;
+        return cota.trim().toLowerCase(Locale.ROOT);
     }
 
     public List<Libro> recorridoPreOrden() {
-        List<Libro> lista = new ArrayList<>();
-        preOrdenRec(raiz, lista);
+        List<Libro> lista = new ArrayList<>(totalLibros);
+        forEachPreOrden(lista::add);
         return lista;
     }
 
-    private void preOrdenRec(NodoBST nodo, List<Libro> lista) {
-        if (nodo == null) return;
-        lista.add(nodo.libro);
-        preOrdenRec(nodo.izquierdo, lista);
-        preOrdenRec(nodo.derecho, lista);
+    public void forEachPreOrden(Consumer<Libro> accion) {
+        if (raiz == null) return;
+        Deque<NodoBST> pila = new ArrayDeque<>();
+        pila.push(raiz);
+        while (!pila.isEmpty()) {
+            NodoBST nodo = pila.pop();
+            emitir(nodo, accion);
+            if (nodo.derecho != null) pila.push(nodo.derecho);
+            if (nodo.izquierdo != null) pila.push(nodo.izquierdo);
+        }
     }
 
     public List<Libro> recorridoPostOrden() {
-        List<Libro> lista = new ArrayList<>();
-        postOrdenRec(raiz, lista);
+        List<Libro> lista = new ArrayList<>(totalLibros);
+        forEachPostOrden(lista::add);
         return lista;
     }
 
-    private void postOrdenRec(NodoBST nodo, List<Libro> lista) {
-        if (nodo == null) return;
-        postOrdenRec(nodo.izquierdo, lista);
-        postOrdenRec(nodo.derecho, lista);
-        lista.add(nodo.libro);
+    public void forEachPostOrden(Consumer<Libro> accion) {
+        Deque<NodoBST> pila = new ArrayDeque<>();
+        NodoBST actual = raiz;
+        NodoBST ultimoVisitado = null;
+        while (actual != null || !pila.isEmpty()) {
+            if (actual != null) {
+                pila.push(actual);
+                actual = actual.izquierdo;
+            } else {
+                NodoBST tope = pila.peek();
+                if (tope.derecho != null && tope.derecho != ultimoVisitado) {
+                    actual = tope.derecho;
+                } else {
+                    emitir(tope, accion);
+                    ultimoVisitado = pila.pop();
+                }
+            }
+        }
+    }
+
+    static void emitir(NodoBST nodo, Consumer<Libro> accion) {
+        for (int i = 0; i < nodo.cantidad; i++) accion.accept(nodo.libros[i]);
     }
 
     /**
@@ -167,7 +622,7 @@ public class ArbolBST {
         if (raiz == null) return null;
         NodoBST min = raiz;
         while (min.izquierdo != null) min = min.izquierdo;
-        return min.libro;
+        return min.primero();
     }
 
     /**
@@ -177,117 +632,187 @@ public class ArbolBST {
         if (raiz == null) return null;
         NodoBST max = raiz;
         while (max.derecho != null) max = max.derecho;
-        return max.libro;
+        return max.primero();
     }
 
-    public int contarNodos() {
-        return contarRec(raiz);
+    /**
+     * Número de libros del catálogo (un nodo puede contener varios).
+     */
+    public int contarLibros() {
+        return totalLibros;
     }
 
-    private int contarRec(NodoBST nodo) {
-        if (nodo == null) return 0;
-        return 1 + contarRec(nodo.izquierdo) + contarRec(nodo.derecho);
+    /**
+     * Número de nodos, es decir, de apellidos distintos. O(1).
+     */
+    public int contarNodos() {
+        return tamanioNodo(raiz);
     }
 
+    /**
+     * Altura del árbol, leída de la raíz. O(1).
+     */
     public int altura() {
-        return alturaRec(raiz);
-    }
-
-    private int alturaRec(NodoBST nodo) {
-        if (nodo == null) return 0;
-        int izq = alturaRec(nodo.izquierdo);
-        int der = alturaRec(nodo.derecho);
-        return 1 + Math.max(izq, der);
+        return alturaNodo(raiz);
     }
 
     /**
-     * Busca por ISBN (recorre el árbol).
+     * Busca por ISBN usando el índice hash (O(1)).
      */
     public Libro buscarPorIsbn(String isbn) {
         if (isbn == null || isbn.trim().isEmpty()) return null;
-        return buscarPorIsbnRec(raiz, isbn.trim());
+        String clave = isbn.trim();
+        NodoBST nodo = indiceIsbn.get(clave);
+        if (nodo == null) return null;
+        for (int i = 0; i < nodo.cantidad; i++) {
+            if (clave.equals(nodo.libros[i].getIsbn())) return nodo.libros[i];
+        }
+        return null;
     }
 
-    private Libro buscarPorIsbnRec(NodoBST nodo, String isbn) {
-        if (nodo == null) return null;
-        if (Objects.equals(nodo.libro.getIsbn(), isbn)) return nodo.libro;
-        Libro izq = buscarPorIsbnRec(nodo.izquierdo, isbn);
-        if (izq != null) return izq;
-        return buscarPorIsbnRec(nodo.derecho, isbn);
+    private void indexarIsbn(Libro libro, NodoBST nodo) {
+        if (libro.getIsbn() != null) indiceIsbn.put(libro.getIsbn(), nodo);
+    }
+
+    private void indexarIsbn(NodoBST nodo) {
+        for (int i = 0; i < nodo.cantidad; i++) indexarIsbn(nodo.libros[i], nodo);
+    }
+
+    private void desindexarIsbn(NodoBST nodo) {
+        for (int i = 0; i < nodo.cantidad; i++) {
+            if (nodo.libros[i].getIsbn() != null) indiceIsbn.remove(nodo.libros[i].getIsbn(), nodo);
+        }
     }
 
     /**
-     * Buscar por categoría (recorrido completo)
+     * Buscar por categoría (case-insensitive) usando el índice invertido.
+     * Los libros se devuelven en orden de registro.
      */
     public List<Libro> buscarPorCategoria(String categoria) {
-        List<Libro> lista = new ArrayList<>();
-        if (categoria == null) return lista;
-        buscarPorCategoriaRec(raiz, categoria.trim().toLowerCase(), lista);
-        return lista;
+        if (categoria == null) return new ArrayList<>();
+        return indiceCategorias.buscar(categoria);
+    }
+
+    /**
+     * Libros cuyo título contiene todas las palabras de la consulta, sin distinguir
+     * mayúsculas ni tildes ("paramo" encuentra "Pedro Páramo"). Orden de alta.
+     */
+    public List<Libro> buscarPorTitulo(String consulta) {
+        return indiceTexto.buscar(consulta);
+    }
+
+    /**
+     * Clave con la que se agrupan las categorías (sin espacios extremos ni mayúsculas).
+     */
+    public static String claveCategoria(String categoria) {
+        return IndiceCategorias.normalizar(categoria);
     }
 
-    private void buscarPorCategoriaRec(NodoBST nodo, String categoriaLower, List<Libro> lista) {
-        if (nodo == null) return;
-        buscarPorCategoriaRec(nodo.izquierdo, categoriaLower, lista);
-        if (nodo.libro.getCategoria() != null &&
-                nodo.libro.getCategoria().toLowerCase().equals(categoriaLower)) {
-            lista.add(nodo.libro);
+    /**
+     * Cantidad de libros de una categoría sin construir la lista.
+     */
+    public int contarPorCategoria(String categoria) {
+        if (categoria == null) return 0;
+        return indiceCategorias.contar(categoria);
+    }
+
+    /**
+     * Conteo de libros por categoría (clave normalizada en minúsculas).
+     */
+    public Map<String, Integer> conteoPorCategoria() {
+        return indiceCategorias.conteos();
+    }
+
+    /**
+     * Libros que cumplen todos los criterios de la consulta. Se recorre solo el índice más
+     * selectivo (rango de años, categoría o editorial) y el resto se verifica libro a libro;
+     * el stream es perezoso y el árbol no debe modificarse mientras se consume.
+     */
+    public Stream<Libro> consultar(Consulta consulta) {
+        if (consulta == null) throw new IllegalArgumentException("Consulta nula");
+        Iterator<Libro> recorrido = indiceAtributos.recorrer(consulta);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(recorrido,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Índice que guiaría la consulta: "año", "categoría", "editorial" o "completo".
+     */
+    public String planConsulta(Consulta consulta) {
+        if (consulta == null) throw new IllegalArgumentException("Consulta nula");
+        switch (indiceAtributos.elegirGuia(consulta)) {
+            case ANIO:
+                return "año";
+            case CATEGORIA:
+                return "categoría";
+            case EDITORIAL:
+                return "editorial";
+            default:
+                return "completo";
         }
-        buscarPorCategoriaRec(nodo.derecho, categoriaLower, lista);
     }
 
     /**
      * Listar disponibles / prestados
      */
     public List<Libro> listarDisponibles() {
-        List<Libro> lista = new ArrayList<>();
-        listarPorDisponibilidadRec(raiz, true, lista);
-        return lista;
+        return listarPorDisponibilidad(true);
     }
 
     public List<Libro> listarPrestados() {
-        List<Libro> lista = new ArrayList<>();
-        listarPorDisponibilidadRec(raiz, false, lista);
-        return lista;
+        return listarPorDisponibilidad(false);
     }
 
-    private void listarPorDisponibilidadRec(NodoBST nodo, boolean disponible, List<Libro> lista) {
-        if (nodo == null) return;
-        listarPorDisponibilidadRec(nodo.izquierdo, disponible, lista);
-        if (nodo.libro.isDisponible() == disponible) lista.add(nodo.libro);
-        listarPorDisponibilidadRec(nodo.derecho, disponible, lista);
+    private List<Libro> listarPorDisponibilidad(boolean disponible) {
+        if (totalLibros >= UMBRAL_PARALELO) {
+            return stream(true).filter(libro -> libro.isDisponible() == disponible).collect(Collectors.toList());
+        }
+        List<Libro> lista = new ArrayList<>();
+        forEachInOrden(libro -> {
+            if (libro.isDisponible() == disponible) lista.add(libro);
+        });
+        return lista;
     }
 
     /**
-     * Comprueba si existe un apellido en el árbol.
+     * Spliterator in-orden que se divide por subárboles (ver {@link SpliteratorInOrden}).
+     * El árbol no debe modificarse mientras se recorre.
      */
-    private boolean existeApellido(String clave) {
-        return existeRec(raiz, clave);
+    public Spliterator<Libro> spliterator() {
+        return new SpliteratorInOrden(raiz, totalLibros);
     }
 
-    private boolean existeRec(NodoBST nodo, String clave) {
-        if (nodo == null) return false;
-        String claveNodo = claveAutor(nodo.libro.getAutor());
-        int cmp = clave.compareToIgnoreCase(claveNodo);
-        if (cmp < 0) return existeRec(nodo.izquierdo, clave);
-        else if (cmp > 0) return existeRec(nodo.derecho, clave);
-        else return true;
+    /**
+     * Stream de los libros en orden alfabético; si es paralelo, cada hilo recorre subárboles
+     * distintos y las operaciones ordenadas (collect, forEachOrdered) conservan el orden.
+     */
+    public Stream<Libro> stream(boolean paralelo) {
+        return StreamSupport.stream(spliterator(), paralelo);
     }
 
     /**
      * Extrae el apellido del campo autor para comparar claves.
      * Si la cadena contiene comas (ej. "Borges, Jorge L.") toma la parte antes de la coma.
      * Si no contiene coma, toma la última palabra.
+     * Recorre la cadena por índices (sin split ni expresiones regulares) y devuelve la clave
+     * en minúsculas, de modo que las comparaciones posteriores pueden usar compareTo directo.
      */
-    private String claveAutor(String autor) {
+    public static String claveAutor(String autor) {
         if (autor == null) return "";
-        autor = autor.trim();
-        if (autor.contains(",")) {
-            String[] parts = autor.split(",", 2);
-            return parts[0].trim().toLowerCase();
+        int inicio;
+        int fin;
+        int coma = autor.indexOf(',');
+        if (coma >= 0) {
+            inicio = 0;
+            fin = coma;
         } else {
-            String[] words = autor.split("\\s+");
-            return words[words.length - 1].trim().toLowerCase();
+            fin = autor.length();
+            while (fin > 0 && Character.isWhitespace(autor.charAt(fin - 1))) fin--;
+            inicio = fin;
+            while (inicio > 0 && !Character.isWhitespace(autor.charAt(inicio - 1))) inicio--;
         }
+        while (inicio < fin && Character.isWhitespace(autor.charAt(inicio))) inicio++;
+        while (fin > inicio && Character.isWhitespace(autor.charAt(fin - 1))) fin--;
+        return autor.substring(inicio, fin).toLowerCase(Locale.ROOT);
     }
 }
@@ -0,0 +1,175 @@
+package estructura;
+
+import java.util.Arrays;
+import java.util.List;
+import modelo.Libro;
+import modelo.NodoBST;
+
+/**
+ * Variante persistente (copy-on-write) del árbol de autores, siempre balanceada (AVL).
+ * Cada insertar/eliminar copia solo el camino desde la raíz hasta el nodo afectado
+ * (O(log n) nodos nuevos), comparte el resto con la versión anterior y publica la nueva
+ * raíz con una escritura volatile. Los lectores obtienen una {@link Instantanea} en O(1)
+ * y la recorren sin candados mientras los escritores siguen trabajando; las versiones
+ * antiguas las recolecta el GC en cuanto ninguna instantánea las referencia.
+ *
+ * Los nodos publicados nunca se modifican. Las escrituras se serializan en este objeto.
+ */
+public class ArbolPersistente {
+    private volatile Instantanea actual;
+
+    public ArbolPersistente() {
+        this.actual = new Instantanea(null, 0, 0);
+    }
+
+    /**
+     * Versión vigente del árbol. O(1), sin bloqueo.
+     */
+    public Instantanea instantanea() {
+        return actual;
+    }
+
+    public synchronized void insertar(Libro libro) {
+        if (libro == null) throw new IllegalArgumentException("Libro nulo");
+        Instantanea previa = actual;
+        NodoBST raiz = insertar(previa.raiz, ArbolBST.claveAutor(libro.getAutor()), libro);
+        publicar(raiz, previa.contarLibros() + 1);
+    }
+
+    /**
+     * Elimina el apellido con todos sus libros. Lanza IllegalArgumentException si no existe.
+     */
+    public synchronized void eliminarPorAutor(String autor) {
+        Instantanea previa = actual;
+        String clave = ArbolBST.claveAutor(autor);
+        NodoBST nodo = previa.buscarNodo(clave);
+        if (nodo == null) throw new IllegalArgumentException("Autor no encontrado: " + autor);
+        publicar(eliminar(previa.raiz, clave), previa.contarLibros() - nodo.cantidad);
+    }
+
+    /**
+     * Elimina un único título del autor. Lanza IllegalArgumentException si no existe.
+     */
+    public synchronized void eliminarLibro(String autor, String isbn) {
+        Instantanea previa = actual;
+        String clave = ArbolBST.claveAutor(autor);
+        NodoBST nodo = previa.buscarNodo(clave);
+        if (nodo == null) throw new IllegalArgumentException("Autor no encontrado: " + autor);
+        int posicion = -1;
+        for (int i = 0; i < nodo.cantidad; i++) {
+            if (nodo.libros[i].getIsbn() != null && nodo.libros[i].getIsbn().equals(isbn)) posicion = i;
+        }
+        if (posicion < 0) throw new IllegalArgumentException("El autor " + autor + " no tiene el ISBN: " + isbn);
+        NodoBST raiz;
+        if (nodo.cantidad == 1) {
+            raiz = eliminar(previa.raiz, clave);
+        } else {
+            Libro[] libros = new Libro[nodo.cantidad - 1];
+            System.arraycopy(nodo.libros, 0, libros, 0, posicion);
+            System.arraycopy(nodo.libros, posicion + 1, libros, posicion, nodo.cantidad - posicion - 1);
+            raiz = reemplazar(previa.raiz, clave, libros);
+        }
+        publicar(raiz, previa.contarLibros() - 1);
+    }
+
+    /**
+     * Reemplaza el contenido por una copia del árbol mutable (tras una carga masiva),
+     * construida perfectamente balanceada en O(n). Los arreglos de libros se copian porque
+     * los del árbol mutable pueden seguir creciendo en su lugar.
+     */
+    public synchronized void reconstruirDesde(ArbolBST arbol) {
+        actual = instantaneaDe(arbol, actual.numero() + 1);
+    }
+
+    /**
+     * Versión inmutable de un árbol mutable, construida como en {@link #reconstruirDesde} pero
+     * sin un árbol persistente que la conserve: para quien solo necesita instantáneas a pedido.
+     * El árbol no debe cambiar mientras se copia.
+     */
+    public static Instantanea instantaneaDe(ArbolBST arbol, long numero) {
+        List<NodoBST> nodos = arbol.nodosEnOrden();
+        return new Instantanea(construir(nodos, 0, nodos.size() - 1), arbol.contarLibros(), numero);
+    }
+
+    private static NodoBST construir(List<NodoBST> nodos, int desde, int hasta) {
+        if (desde > hasta) return null;
+        int medio = (desde + hasta) >>> 1;
+        NodoBST nodo = nodos.get(medio);
+        return new NodoBST(nodo.clave, Arrays.copyOf(nodo.libros, nodo.cantidad), nodo.cantidad,
+                construir(nodos, desde, medio - 1), construir(nodos, medio + 1, hasta));
+    }
+
+    private void publicar(NodoBST raiz, int totalLibros) {
+        actual = new Instantanea(raiz, totalLibros, actual.numero() + 1);
+    }
+
+    private static NodoBST insertar(NodoBST nodo, String clave, Libro libro) {
+        if (nodo == null) return new NodoBST(clave, new Libro[] { libro }, 1, null, null);
+        int cmp = clave.compareTo(nodo.clave);
+        if (cmp < 0) return balancear(copiar(nodo, insertar(nodo.izquierdo, clave, libro), nodo.derecho));
+        if (cmp > 0) return balancear(copiar(nodo, nodo.izquierdo, insertar(nodo.derecho, clave, libro)));
+        Libro[] libros = Arrays.copyOf(nodo.libros, nodo.cantidad + 1);
+        libros[nodo.cantidad] = libro;
+        return new NodoBST(nodo.clave, libros, libros.length, nodo.izquierdo, nodo.derecho);
+    }
+
+    private static NodoBST reemplazar(NodoBST nodo, String clave, Libro[] libros) {
+        int cmp = clave.compareTo(nodo.clave);
+        if (cmp < 0) return copiar(nodo, reemplazar(nodo.izquierdo, clave, libros), nodo.derecho);
+        if (cmp > 0) return copiar(nodo, nodo.izquierdo, reemplazar(nodo.derecho, clave, libros));
+        return new NodoBST(nodo.clave, libros, libros.length, nodo.izquierdo, nodo.derecho);
+    }
+
+    private static NodoBST eliminar(NodoBST nodo, String clave) {
+        int cmp = clave.compareTo(nodo.clave);
+        if (cmp < 0) return balancear(copiar(nodo, eliminar(nodo.izquierdo, clave), nodo.derecho));
+        if (cmp > 0) return balancear(copiar(nodo, nodo.izquierdo, eliminar(nodo.derecho, clave)));
+        if (nodo.izquierdo == null) return nodo.derecho;
+        if (nodo.derecho == null) return nodo.izquierdo;
+        NodoBST sucesor = nodo.derecho;
+        while (sucesor.izquierdo != null) sucesor = sucesor.izquierdo;
+        return balancear(new NodoBST(sucesor.clave, sucesor.libros, sucesor.cantidad,
+                nodo.izquierdo, quitarMinimo(nodo.derecho)));
+    }
+
+    private static NodoBST quitarMinimo(NodoBST nodo) {
+        if (nodo.izquierdo == null) return nodo.derecho;
+        return balancear(copiar(nodo, quitarMinimo(nodo.izquierdo), nodo.derecho));
+    }
+
+    private static NodoBST copiar(NodoBST nodo, NodoBST izquierdo, NodoBST derecho) {
+        return new NodoBST(nodo.clave, nodo.libros, nodo.cantidad, izquierdo, derecho);
+    }
+
+    /**
+     * Balanceo AVL sin mutación: las rotaciones construyen nodos nuevos.
+     */
+    private static NodoBST balancear(NodoBST nodo) {
+        int factor = altura(nodo.izquierdo) - altura(nodo.derecho);
+        if (factor > 1) {
+            NodoBST izquierdo = nodo.izquierdo;
+            if (altura(izquierdo.izquierdo) < altura(izquierdo.derecho)) izquierdo = rotarIzquierda(izquierdo);
+            return rotarDerecha(copiar(nodo, izquierdo, nodo.derecho));
+        }
+        if (factor < -1) {
+            NodoBST derecho = nodo.derecho;
+            if (altura(derecho.derecho) < altura(derecho.izquierdo)) derecho = rotarDerecha(derecho);
+            return rotarIzquierda(copiar(nodo, nodo.izquierdo, derecho));
+        }
+        return nodo;
+    }
+
+    private static NodoBST rotarDerecha(NodoBST nodo) {
+        NodoBST izquierdo = nodo.izquierdo;
+        return copiar(izquierdo, izquierdo.izquierdo, copiar(nodo, izquierdo.derecho, nodo.derecho));
+    }
+
+    private static NodoBST rotarIzquierda(NodoBST nodo) {
+        NodoBST derecho = nodo.derecho;
+        return copiar(derecho, copiar(nodo, nodo.izquierdo, derecho.izquierdo), derecho.derecho);
+    }
+
+    private static int altura(NodoBST nodo) {
+        return nodo == null ? 0 : nodo.altura;
+    }
+}
@@ -0,0 +1,357 @@
+package estructura;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import modelo.Libro;
+
+/**
+ * Vista de solo lectura del catálogo sobre un archivo columnar mapeado en memoria.
+ * Los campos viven fuera del heap: abrir el archivo no lee ni construye objetos, y los
+ * Libro se materializan solo al devolver resultados.
+ *
+ * Los registros están ordenados por apellido normalizado (el orden in-orden del árbol),
+ * así que la búsqueda por autor es una búsqueda binaria sobre la columna de claves.
+ * Editorial y categoría se guardan como códigos de diccionario; año y disponibilidad son
+ * columnas de ancho fijo que se recorren secuencialmente.
+ *
+ * Formato (big-endian):
+ * <pre>
+ * cabecera: int mágico, int versión, int libros, int editoriales, int categorías
+ * columnas de n enteros: clave, isbn, título, autor, prestatario (-1 si no hay),
+ *                        editorial (código), categoría (código), año
+ * columna de n bytes:    disponible (1/0)
+ * diccionarios:          desplazamientos de cada editorial y cada categoría (-1 si es null)
+ * textos:               [unsigned short longitud][bytes UTF-8]
+ * </pre>
+ * Todos los textos se referencian por desplazamiento dentro de la zona de textos; el archivo
+ * completo debe caber en 2 GB (un único MappedByteBuffer).
+ */
+public final class CatalogoMapeado {
+    private static final int MAGICO = 0x434F4C31; // "COL1"
+    private static final int VERSION = 1;
+    private static final int CABECERA = 20;
+    private static final int COLUMNAS_ENTERAS = 8;
+    private static final int SIN_TEXTO = -1;
+
+    private final ByteBuffer datos;
+    private final int total;
+    private final int colClave;
+    private final int colIsbn;
+    private final int colTitulo;
+    private final int colAutor;
+    private final int colPrestatario;
+    private final int colEditorial;
+    private final int colCategoria;
+    private final int colAnio;
+    private final int colDisponible;
+    private final String[] editoriales;
+    private final String[] categorias;
+    private final int inicioTextos;
+
+    private CatalogoMapeado(ByteBuffer datos) throws IOException {
+        this.datos = datos;
+        if (datos.capacity() < CABECERA || datos.getInt(0) != MAGICO || datos.getInt(4) != VERSION) {
+            throw new IOException("Archivo columnar con formato desconocido");
+        }
+        total = datos.getInt(8);
+        int totalEditoriales = datos.getInt(12);
+        int totalCategorias = datos.getInt(16);
+        int ancho = total * 4;
+        colClave = CABECERA;
+        colIsbn = colClave + ancho;
+        colTitulo = colIsbn + ancho;
+        colAutor = colTitulo + ancho;
+        colPrestatario = colAutor + ancho;
+        colEditorial = colPrestatario + ancho;
+        colCategoria = colEditorial + ancho;
+        colAnio = colCategoria + ancho;
+        colDisponible = colAnio + ancho;
+        int dicEditoriales = colDisponible + total;
+        int dicCategorias = dicEditoriales + totalEditoriales * 4;
+        inicioTextos = dicCategorias + totalCategorias * 4;
+        // los diccionarios son pequeños: se decodifican una sola vez
+        editoriales = new String[totalEditoriales];
+        for (int i = 0; i < totalEditoriales; i++) editoriales[i] = texto(datos.getInt(dicEditoriales + i * 4));
+        categorias = new String[totalCategorias];
+        for (int i = 0; i < totalCategorias; i++) categorias[i] = texto(datos.getInt(dicCategorias + i * 4));
+    }
+
+    /**
+     * Mapea el archivo en memoria. No lee los registros: el coste es independiente del tamaño.
+     */
+    public static CatalogoMapeado abrir(Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            if (canal.size() > Integer.MAX_VALUE) throw new IOException("Archivo columnar mayor a 2 GB: " + archivo);
+            return new CatalogoMapeado(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+        }
+    }
+
+    /**
+     * Escribe la instantánea en formato columnar. El estado de préstamo es el vigente al
+     * recorrer cada libro. Las columnas y los textos se escriben por tramos en su posición del
+     * archivo, sin armarlo en el heap. Se escribe en un temporal sincronizado que se renombra
+     * de forma atómica sobre {@code archivo}: ante cualquier fallo (no cabe en 2 GB, disco
+     * lleno) el temporal se borra y un archivo anterior queda intacto.
+     */
+    public static void escribir(Instantanea instantanea, Path archivo) throws IOException {
+        List<Libro> libros = new ArrayList<>(instantanea.contarLibros());
+        List<String> claves = new ArrayList<>(instantanea.contarLibros());
+        ArbolBST.forEachNodoInOrden(instantanea.raiz, nodo -> {
+            for (int i = 0; i < nodo.cantidad; i++) {
+                libros.add(nodo.libros[i]);
+                claves.add(nodo.clave);
+            }
+        });
+        int n = libros.size();
+        // el préstamo se lee una vez por libro para que disponible y prestatario coincidan
+        String[] prestatarios = new String[n];
+        // la categoría o editorial null tiene su propio código (su texto es SIN_TEXTO)
+        Map<String, Integer> codigosEditorial = new LinkedHashMap<>();
+        Map<String, Integer> codigosCategoria = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            Libro libro = libros.get(i);
+            synchronized (libro) {
+                prestatarios[i] = libro.isDisponible() ? null : libro.getPrestatario();
+            }
+            codigosEditorial.computeIfAbsent(libro.getEditorial(), e -> codigosEditorial.size());
+            codigosCategoria.computeIfAbsent(libro.getCategoria(), c -> codigosCategoria.size());
+        }
+
+        long ancho = 4L * n;
+        long inicioDisponible = CABECERA + COLUMNAS_ENTERAS * ancho;
+        long inicioDiccionarios = inicioDisponible + n;
+        long inicioTextos = inicioDiccionarios + 4L * (codigosEditorial.size() + codigosCategoria.size());
+        if (inicioTextos > Integer.MAX_VALUE) throw new IllegalArgumentException("El catálogo no cabe en un archivo de 2 GB");
+
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer cabecera = ByteBuffer.allocate(CABECERA);
+            cabecera.putInt(MAGICO).putInt(VERSION).putInt(n)
+                    .putInt(codigosEditorial.size()).putInt(codigosCategoria.size()).flip();
+            while (cabecera.hasRemaining()) canal.write(cabecera, cabecera.position());
+
+            Columna[] columnas = new Columna[COLUMNAS_ENTERAS];
+            for (int c = 0; c < COLUMNAS_ENTERAS; c++) columnas[c] = new Columna(canal, CABECERA + c * ancho);
+            Columna disponibles = new Columna(canal, inicioDisponible);
+            Textos textos = new Textos(canal, inicioTextos);
+            String claveAnterior = null;
+            int desplazamientoClave = 0;
+            for (int i = 0; i < n; i++) {
+                Libro libro = libros.get(i);
+                // los libros de un mismo apellido son contiguos: la clave se guarda una vez
+                if (!claves.get(i).equals(claveAnterior)) {
+                    claveAnterior = claves.get(i);
+                    desplazamientoClave = textos.agregar(claveAnterior);
+                }
+                columnas[0].escribirInt(desplazamientoClave);
+                columnas[1].escribirInt(textos.agregar(libro.getIsbn()));
+                columnas[2].escribirInt(textos.agregar(libro.getTitulo()));
+                columnas[3].escribirInt(textos.agregar(libro.getAutor()));
+                columnas[4].escribirInt(prestatarios[i] == null ? SIN_TEXTO : textos.agregar(prestatarios[i]));
+                columnas[5].escribirInt(codigosEditorial.get(libro.getEditorial()));
+                columnas[6].escribirInt(codigosCategoria.get(libro.getCategoria()));
+                columnas[7].escribirInt(libro.getAnioPublicacion());
+                disponibles.escribirByte(prestatarios[i] == null ? 1 : 0);
+            }
+            Columna diccionarios = new Columna(canal, inicioDiccionarios);
+            for (String editorial : codigosEditorial.keySet()) diccionarios.escribirInt(textos.agregar(editorial));
+            for (String categoria : codigosCategoria.keySet()) diccionarios.escribirInt(textos.agregar(categoria));
+            for (Columna columna : columnas) columna.vaciar();
+            disponibles.vaciar();
+            diccionarios.vaciar();
+            textos.vaciar();
+            canal.force(true);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temporal);
+            throw ex;
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Tramo del archivo que se escribe secuencialmente desde una posición fija, con búfer propio. */
+    private static class Columna {
+        private final FileChannel canal;
+        private final ByteBuffer bufer = ByteBuffer.allocate(1 << 16);
+        private long posicion;
+
+        Columna(FileChannel canal, long posicion) {
+            this.canal = canal;
+            this.posicion = posicion;
+        }
+
+        void escribirInt(int valor) throws IOException {
+            if (bufer.remaining() < 4) vaciar();
+            bufer.putInt(valor);
+        }
+
+        void escribirByte(int valor) throws IOException {
+            if (!bufer.hasRemaining()) vaciar();
+            bufer.put((byte) valor);
+        }
+
+        void escribir(byte[] bytes) throws IOException {
+            int escritos = 0;
+            while (escritos < bytes.length) {
+                if (!bufer.hasRemaining()) vaciar();
+                int tramo = Math.min(bufer.remaining(), bytes.length - escritos);
+                bufer.put(bytes, escritos, tramo);
+                escritos += tramo;
+            }
+        }
+
+        void vaciar() throws IOException {
+            bufer.flip();
+            while (bufer.hasRemaining()) posicion += canal.write(bufer, posicion);
+            bufer.clear();
+        }
+    }
+
+    /** Zona de textos: [unsigned short longitud][bytes UTF-8], cada uno en su desplazamiento. */
+    private static final class Textos extends Columna {
+        private final long maximo;
+        private int tamanio;
+
+        Textos(FileChannel canal, long inicio) {
+            super(canal, inicio);
+            this.maximo = Integer.MAX_VALUE - inicio;
+        }
+
+        int agregar(String texto) throws IOException {
+            if (texto == null) return SIN_TEXTO;
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF) throw new IllegalArgumentException("Texto demasiado largo para el archivo columnar");
+            if (tamanio > maximo - bytes.length - 2) {
+                throw new IllegalArgumentException("El catálogo no cabe en un archivo de 2 GB");
+            }
+            int desplazamiento = tamanio;
+            escribirByte(bytes.length >>> 8);
+            escribirByte(bytes.length);
+            escribir(bytes);
+            tamanio += bytes.length + 2;
+            return desplazamiento;
+        }
+    }
+
+    public int contarLibros() {
+        return total;
+    }
+
+    /**
+     * Materializa el registro i (en orden alfabético de apellido).
+     */
+    public Libro libro(int i) {
+        if (i < 0 || i >= total) throw new IndexOutOfBoundsException("Registro inexistente: " + i);
+        int fila = i * 4;
+        Libro libro = new Libro(texto(datos.getInt(colIsbn + fila)), texto(datos.getInt(colTitulo + fila)),
+                texto(datos.getInt(colAutor + fila)), editoriales[datos.getInt(colEditorial + fila)],
+                datos.getInt(colAnio + fila), categorias[datos.getInt(colCategoria + fila)]);
+        if (datos.get(colDisponible + i) == 0) libro.prestar(texto(datos.getInt(colPrestatario + fila)));
+        return libro;
+    }
+
+    public List<Libro> buscarPorAutor(String autor) {
+        List<Libro> resultado = new ArrayList<>();
+        if (autor == null || autor.trim().isEmpty()) return resultado;
+        String clave = ArbolBST.claveAutor(autor);
+        // primera fila con clave >= buscada
+        int bajo = 0;
+        int alto = total;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (texto(datos.getInt(colClave + medio * 4)).compareTo(clave) < 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        if (bajo == total) return resultado;
+        int desplazamiento = datos.getInt(colClave + bajo * 4);
+        if (!texto(desplazamiento).equals(clave)) return resultado;
+        // las filas del mismo apellido comparten el desplazamiento de la clave
+        for (int i = bajo; i < total && datos.getInt(colClave + i * 4) == desplazamiento; i++) resultado.add(libro(i));
+        return resultado;
+    }
+
+    public int contarDisponibles() {
+        int disponibles = 0;
+        for (int i = 0; i < total; i++) disponibles += datos.get(colDisponible + i);
+        return disponibles;
+    }
+
+    public List<Libro> listarDisponibles() {
+        List<Libro> resultado = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            if (datos.get(colDisponible + i) != 0) resultado.add(libro(i));
+        }
+        return resultado;
+    }
+
+    public int contarPorCategoria(String categoria) {
+        boolean[] buscados = codigosCategoria(categoria);
+        int cantidad = 0;
+        for (int i = 0; i < total; i++) {
+            if (buscados[datos.getInt(colCategoria + i * 4)]) cantidad++;
+        }
+        return cantidad;
+    }
+
+    public List<Libro> buscarPorCategoria(String categoria) {
+        boolean[] buscados = codigosCategoria(categoria);
+        List<Libro> resultado = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            if (buscados[datos.getInt(colCategoria + i * 4)]) resultado.add(libro(i));
+        }
+        return resultado;
+    }
+
+    /**
+     * Conteo por categoría normalizada, como {@link ArbolBST#conteoPorCategoria()}: los libros
+     * sin categoría no se cuentan.
+     */
+    public Map<String, Integer> conteoPorCategoria() {
+        int[] porCodigo = new int[categorias.length];
+        for (int i = 0; i < total; i++) porCodigo[datos.getInt(colCategoria + i * 4)]++;
+        Map<String, Integer> conteo = new HashMap<>();
+        for (int c = 0; c < categorias.length; c++) {
+            if (porCodigo[c] > 0 && categorias[c] != null) conteo.merge(IndiceCategorias.normalizar(categorias[c]), porCodigo[c], Integer::sum);
+        }
+        return conteo;
+    }
+
+    public void forEach(Consumer<Libro> accion) {
+        for (int i = 0; i < total; i++) accion.accept(libro(i));
+    }
+
+    /** Códigos del diccionario cuya categoría coincide (sin distinguir mayúsculas) con la buscada. */
+    private boolean[] codigosCategoria(String categoria) {
+        boolean[] buscados = new boolean[categorias.length];
+        if (categoria == null || categoria.trim().isEmpty()) return buscados;
+        String normalizada = IndiceCategorias.normalizar(categoria);
+        for (int c = 0; c < categorias.length; c++) {
+            buscados[c] = categorias[c] != null && IndiceCategorias.normalizar(categorias[c]).equals(normalizada);
+        }
+        return buscados;
+    }
+
+    private String texto(int desplazamiento) {
+        if (desplazamiento == SIN_TEXTO) return null;
+        int posicion = inicioTextos + desplazamiento;
+        int longitud = ((datos.get(posicion) & 0xFF) << 8) | (datos.get(posicion + 1) & 0xFF);
+        byte[] bytes = new byte[longitud];
+        datos.get(posicion + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,83 @@
+package estructura;
+
+/**
+ * Consulta por varios atributos a la vez; cada criterio es opcional y se combinan con Y.
+ *
+ * <pre>
+ * Consulta.nueva().anioEntre(1920, 1950).categoria("Poesía").disponible(true)
+ * </pre>
+ */
+public final class Consulta {
+    Integer anioDesde;
+    Integer anioHasta;
+    String categoria;
+    String editorial;
+    Boolean disponible;
+
+    private Consulta() {
+    }
+
+    public static Consulta nueva() {
+        return new Consulta();
+    }
+
+    /** Año de publicación entre {@code desde} y {@code hasta}, ambos inclusive. */
+    public Consulta anioEntre(int desde, int hasta) {
+        if (desde > hasta) throw new IllegalArgumentException("Rango de años inválido: " + desde + "-" + hasta);
+        this.anioDesde = desde;
+        this.anioHasta = hasta;
+        return this;
+    }
+
+    public Consulta anioDesde(int desde) {
+        this.anioDesde = desde;
+        return this;
+    }
+
+    public Consulta anioHasta(int hasta) {
+        this.anioHasta = hasta;
+        return this;
+    }
+
+    /** Categoría sin distinguir mayúsculas ni espacios extremos. */
+    public Consulta categoria(String categoria) {
+        this.categoria = categoria;
+        return this;
+    }
+
+    /** Editorial sin distinguir mayúsculas ni espacios extremos. */
+    public Consulta editorial(String editorial) {
+        this.editorial = editorial;
+        return this;
+    }
+
+    public Consulta disponible(boolean disponible) {
+        this.disponible = disponible;
+        return this;
+    }
+
+    boolean porAnio() {
+        return anioDesde != null || anioHasta != null;
+    }
+
+    int desde() {
+        return anioDesde != null ? anioDesde : Integer.MIN_VALUE;
+    }
+
+    int hasta() {
+        return anioHasta != null ? anioHasta : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (porAnio()) {
+            sb.append("año ").append(anioDesde != null ? anioDesde : "…").append('-')
+                    .append(anioHasta != null ? anioHasta : "…").append(' ');
+        }
+        if (categoria != null) sb.append("categoría=").append(categoria).append(' ');
+        if (editorial != null) sb.append("editorial=").append(editorial).append(' ');
+        if (disponible != null) sb.append(disponible ? "disponibles " : "prestados ");
+        return sb.length() == 0 ? "todos" : sb.toString().trim();
+    }
+}
@@ -0,0 +1,260 @@
+package estructura;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import modelo.Libro;
+
+/**
+ * Índices secundarios para {@link Consulta}, mantenidos por ArbolBST: año de publicación
+ * (mapa ordenado año -> libros) y mapas de bits por categoría y por editorial, campos de
+ * pocos valores distintos.
+ *
+ * Cada libro recibe un identificador denso; los identificadores de las bajas se reutilizan
+ * para que los mapas de bits no crezcan con el historial. La disponibilidad no se indexa:
+ * préstamos y devoluciones cambian el Libro sin pasar por el árbol, así que se comprueba
+ * sobre el propio registro.
+ *
+ * Plan de ejecución: de los criterios indexados se elige el de menos libros y se recorre
+ * solo ese; el resto de los criterios se verifica por libro (un bit o un campo), sin
+ * listas intermedias.
+ */
+class IndiceAtributos {
+    /** Libros que comparten un valor: mapa de bits por identificador y su cantidad. */
+    private static final class Grupo {
+        final BitSet ids = new BitSet();
+        int cantidad;
+    }
+
+    private final List<Libro> libroPorId = new ArrayList<>();
+    private final Map<Libro, Integer> idPorLibro = new IdentityHashMap<>();
+    private int[] libres = new int[16];
+    private int cantidadLibres;
+
+    private final TreeMap<Integer, Grupo> porAnio = new TreeMap<>();
+    private final Map<String, Grupo> porCategoria = new HashMap<>();
+    private final Map<String, Grupo> porEditorial = new HashMap<>();
+
+    /**
+     * Claves de un libro en los índices, calculadas sin tocarlos: ArbolBST las obtiene antes
+     * de modificar el árbol, así un valor que no se pueda indexar no deja el alta a medias.
+     * Categoría o editorial nulas no se indexan.
+     */
+    static final class Claves {
+        final int anio;
+        final String categoria;
+        final String editorial;
+
+        private Claves(Libro libro) {
+            this.anio = libro.getAnioPublicacion();
+            this.categoria = clave(libro.getCategoria());
+            this.editorial = clave(libro.getEditorial());
+        }
+    }
+
+    static Claves claves(Libro libro) {
+        return new Claves(libro);
+    }
+
+    void agregar(Libro libro, Claves claves) {
+        int id;
+        if (cantidadLibres > 0) {
+            id = libres[--cantidadLibres];
+            libroPorId.set(id, libro);
+        } else {
+            id = libroPorId.size();
+            libroPorId.add(libro);
+        }
+        idPorLibro.put(libro, id);
+        marcar(porAnio.computeIfAbsent(claves.anio, a -> new Grupo()), id);
+        if (claves.categoria != null) marcar(porCategoria.computeIfAbsent(claves.categoria, c -> new Grupo()), id);
+        if (claves.editorial != null) marcar(porEditorial.computeIfAbsent(claves.editorial, e -> new Grupo()), id);
+    }
+
+    void quitar(Libro libro) {
+        Integer id = idPorLibro.remove(libro);
+        if (id == null) return;
+        libroPorId.set(id, null);
+        if (cantidadLibres == libres.length) libres = Arrays.copyOf(libres, cantidadLibres * 2);
+        libres[cantidadLibres++] = id;
+        Claves claves = claves(libro);
+        desmarcar(porAnio, claves.anio, id);
+        if (claves.categoria != null) desmarcar(porCategoria, claves.categoria, id);
+        if (claves.editorial != null) desmarcar(porEditorial, claves.editorial, id);
+    }
+
+    private static void marcar(Grupo grupo, int id) {
+        grupo.ids.set(id);
+        grupo.cantidad++;
+    }
+
+    private static <K> void desmarcar(Map<K, Grupo> indice, K valor, int id) {
+        Grupo grupo = indice.get(valor);
+        if (grupo == null) return;
+        grupo.ids.clear(id);
+        if (--grupo.cantidad == 0) indice.remove(valor);
+    }
+
+    private static String clave(String texto) {
+        return texto == null ? null : IndiceCategorias.normalizar(texto);
+    }
+
+    /** Criterio que guía el recorrido. */
+    enum Guia {
+        ANIO, CATEGORIA, EDITORIAL, COMPLETO
+    }
+
+    /**
+     * Elige el índice más selectivo entre los criterios presentes; sin criterios indexados
+     * se recorre el catálogo completo.
+     */
+    Guia elegirGuia(Consulta consulta) {
+        Guia guia = Guia.COMPLETO;
+        long menor = Long.MAX_VALUE;
+        if (consulta.categoria != null) {
+            Grupo grupo = porCategoria.get(clave(consulta.categoria));
+            long cantidad = grupo == null ? 0 : grupo.cantidad;
+            if (cantidad < menor) {
+                menor = cantidad;
+                guia = Guia.CATEGORIA;
+            }
+        }
+        if (consulta.editorial != null) {
+            Grupo grupo = porEditorial.get(clave(consulta.editorial));
+            long cantidad = grupo == null ? 0 : grupo.cantidad;
+            if (cantidad < menor) {
+                menor = cantidad;
+                guia = Guia.EDITORIAL;
+            }
+        }
+        if (consulta.porAnio()) {
+            long cantidad = 0;
+            for (Grupo grupo : anios(consulta)) {
+                cantidad += grupo.cantidad;
+                if (cantidad >= menor) break;
+            }
+            if (cantidad < menor) guia = Guia.ANIO;
+        }
+        return guia;
+    }
+
+    private Collection<Grupo> anios(Consulta consulta) {
+        if (consulta.desde() > consulta.hasta()) return Collections.emptyList();
+        NavigableMap<Integer, Grupo> rango = porAnio.subMap(consulta.desde(), true, consulta.hasta(), true);
+        return rango.values();
+    }
+
+    /**
+     * Recorrido perezoso de los libros que cumplen la consulta, en orden de identificador
+     * (y de año, si guía el año). No admite modificaciones del árbol mientras se recorre.
+     */
+    Iterator<Libro> recorrer(Consulta consulta) {
+        Guia guia = elegirGuia(consulta);
+        List<BitSet> fuentes = new ArrayList<>();
+        switch (guia) {
+            case ANIO:
+                for (Grupo grupo : anios(consulta)) fuentes.add(grupo.ids);
+                break;
+            case CATEGORIA:
+                agregarFuente(fuentes, porCategoria.get(clave(consulta.categoria)));
+                break;
+            case EDITORIAL:
+                agregarFuente(fuentes, porEditorial.get(clave(consulta.editorial)));
+                break;
+            default:
+                fuentes = null;
+        }
+        // los criterios que no guían se verifican por libro con un bit del índice
+        BitSet categoria = guia == Guia.CATEGORIA || consulta.categoria == null ? null
+                : bitsDe(porCategoria.get(clave(consulta.categoria)));
+        BitSet editorial = guia == Guia.EDITORIAL || consulta.editorial == null ? null
+                : bitsDe(porEditorial.get(clave(consulta.editorial)));
+        return new Recorrido(fuentes, consulta, guia != Guia.ANIO, categoria, editorial);
+    }
+
+    private static void agregarFuente(List<BitSet> fuentes, Grupo grupo) {
+        if (grupo != null) fuentes.add(grupo.ids);
+    }
+
+    private static BitSet bitsDe(Grupo grupo) {
+        return grupo == null ? new BitSet() : grupo.ids;
+    }
+
+    private final class Recorrido implements Iterator<Libro> {
+        /** Mapas de bits a recorrer en orden; null para recorrer todos los identificadores. */
+        private final List<BitSet> fuentes;
+        private final Consulta consulta;
+        private final boolean verificarAnio;
+        private final BitSet categoria;
+        private final BitSet editorial;
+        private int fuente;
+        private int id = -1;
+        private Libro siguiente;
+
+        Recorrido(List<BitSet> fuentes, Consulta consulta, boolean verificarAnio, BitSet categoria, BitSet editorial) {
+            this.fuentes = fuentes;
+            this.consulta = consulta;
+            this.verificarAnio = verificarAnio;
+            this.categoria = categoria;
+            this.editorial = editorial;
+            avanzar();
+        }
+
+        private void avanzar() {
+            siguiente = null;
+            while (true) {
+                id = siguienteId(id + 1);
+                if (id < 0) return;
+                Libro libro = libroPorId.get(id);
+                if (libro != null && cumple(libro, id)) {
+                    siguiente = libro;
+                    return;
+                }
+            }
+        }
+
+        private int siguienteId(int desde) {
+            if (fuentes == null) return desde < libroPorId.size() ? desde : -1;
+            while (fuente < fuentes.size()) {
+                int proximo = fuentes.get(fuente).nextSetBit(desde);
+                if (proximo >= 0) return proximo;
+                fuente++;
+                desde = 0;
+            }
+            return -1;
+        }
+
+        private boolean cumple(Libro libro, int id) {
+            if (verificarAnio && consulta.porAnio()) {
+                int anio = libro.getAnioPublicacion();
+                if (anio < consulta.desde() || anio > consulta.hasta()) return false;
+            }
+            if (categoria != null && !categoria.get(id)) return false;
+            if (editorial != null && !editorial.get(id)) return false;
+            return consulta.disponible == null || libro.isDisponible() == consulta.disponible;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return siguiente != null;
+        }
+
+        @Override
+        public Libro next() {
+            if (siguiente == null) throw new NoSuchElementException();
+            Libro actual = siguiente;
+            avanzar();
+            return actual;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package estructura;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Trie comprimido (radix) de apellidos plegados (sin tildes, minúsculas), mantenido por
+ * ArbolBST. Cada hoja o nodo terminal recuerda las claves del árbol que se pliegan a ese
+ * texto ("cortázar" y "cortazar" comparten entrada) y cuántos libros tiene cada una, así
+ * una clave desaparece del índice cuando se elimina su último libro.
+ *
+ * Admite búsqueda exacta sin tildes, autocompletado por prefijo (en orden alfabético
+ * plegado) y búsqueda aproximada por distancia de edición acotada: la distancia de
+ * Levenshtein se calcula fila a fila mientras se desciende y se poda toda rama cuya fila
+ * ya supera la cota, de modo que solo se visita una fracción pequeña del trie.
+ */
+class IndiceAutores {
+    private static final Nodo[] SIN_HIJOS = new Nodo[0];
+
+    private static final class Nodo {
+        /** Caracteres de la arista que llega a este nodo. */
+        String etiqueta;
+        /** Hijos ordenados por el primer carácter de su etiqueta. */
+        Nodo[] hijos = SIN_HIJOS;
+        int cantidadHijos;
+        /** Claves del árbol que terminan aquí y cuántos libros tiene cada una; null si ninguna. */
+        String[] claves;
+        int[] libros;
+
+        Nodo(String etiqueta) {
+            this.etiqueta = etiqueta;
+        }
+
+        boolean terminal() {
+            return claves != null;
+        }
+
+        int buscarHijo(char c) {
+            int bajo = 0;
+            int alto = cantidadHijos - 1;
+            while (bajo <= alto) {
+                int medio = (bajo + alto) >>> 1;
+                char actual = hijos[medio].etiqueta.charAt(0);
+                if (actual < c) bajo = medio + 1;
+                else if (actual > c) alto = medio - 1;
+                else return medio;
+            }
+            return -(bajo + 1);
+        }
+
+        void insertarHijo(int posicion, Nodo hijo) {
+            if (cantidadHijos == hijos.length) hijos = Arrays.copyOf(hijos, Math.max(2, cantidadHijos * 2));
+            System.arraycopy(hijos, posicion, hijos, posicion + 1, cantidadHijos - posicion);
+            hijos[posicion] = hijo;
+            cantidadHijos++;
+        }
+
+        void quitarHijo(int posicion) {
+            System.arraycopy(hijos, posicion + 1, hijos, posicion, cantidadHijos - posicion - 1);
+            hijos[--cantidadHijos] = null;
+        }
+
+        void sumar(String clave, int cantidad) {
+            if (claves == null) {
+                claves = new String[] { clave };
+                libros = new int[] { cantidad };
+                return;
+            }
+            for (int i = 0; i < claves.length; i++) {
+                if (claves[i].equals(clave)) {
+                    libros[i] += cantidad;
+                    return;
+                }
+            }
+            claves = Arrays.copyOf(claves, claves.length + 1);
+            libros = Arrays.copyOf(libros, libros.length + 1);
+            claves[claves.length - 1] = clave;
+            libros[libros.length - 1] = cantidad;
+        }
+
+        void restar(String clave, int cantidad) {
+            if (claves == null) return;
+            for (int i = 0; i < claves.length; i++) {
+                if (!claves[i].equals(clave)) continue;
+                libros[i] -= cantidad;
+                if (libros[i] > 0) return;
+                if (claves.length == 1) {
+                    claves = null;
+                    libros = null;
+                } else {
+                    String[] otrasClaves = new String[claves.length - 1];
+                    int[] otrosLibros = new int[claves.length - 1];
+                    for (int j = 0, k = 0; j < claves.length; j++) {
+                        if (j == i) continue;
+                        otrasClaves[k] = claves[j];
+                        otrosLibros[k++] = libros[j];
+                    }
+                    claves = otrasClaves;
+                    libros = otrosLibros;
+                }
+                return;
+            }
+        }
+    }
+
+    /** Resultado de la búsqueda aproximada. */
+    static final class Coincidencia {
+        final String clave;
+        final int distancia;
+
+        Coincidencia(String clave, int distancia) {
+            this.clave = clave;
+            this.distancia = distancia;
+        }
+    }
+
+    private final Nodo raiz = new Nodo("");
+
+    /** Suma {@code libros} libros a la clave del árbol. */
+    void agregar(String clave, int libros) {
+        String texto = Normalizacion.plegar(clave);
+        Nodo actual = raiz;
+        int i = 0;
+        while (i < texto.length()) {
+            int posicion = actual.buscarHijo(texto.charAt(i));
+            if (posicion < 0) {
+                actual.insertarHijo(-posicion - 1, new Nodo(texto.substring(i)));
+                actual = actual.hijos[-posicion - 1];
+                i = texto.length();
+                break;
+            }
+            Nodo hijo = actual.hijos[posicion];
+            int comun = prefijoComun(hijo.etiqueta, texto, i);
+            if (comun < hijo.etiqueta.length()) {
+                // se parte la arista: el nodo intermedio toma el tramo común
+                Nodo intermedio = new Nodo(hijo.etiqueta.substring(0, comun));
+                hijo.etiqueta = hijo.etiqueta.substring(comun);
+                intermedio.insertarHijo(0, hijo);
+                actual.hijos[posicion] = intermedio;
+                hijo = intermedio;
+            }
+            actual = hijo;
+            i += comun;
+        }
+        actual.sumar(clave, libros);
+    }
+
+    /** Resta {@code libros} libros a la clave; la clave sale del índice al llegar a cero. */
+    void quitar(String clave, int libros) {
+        String texto = Normalizacion.plegar(clave);
+        Deque<Nodo> ruta = new ArrayDeque<>();
+        Nodo actual = raiz;
+        int i = 0;
+        while (i < texto.length()) {
+            int posicion = actual.buscarHijo(texto.charAt(i));
+            if (posicion < 0) return;
+            Nodo hijo = actual.hijos[posicion];
+            if (!texto.startsWith(hijo.etiqueta, i)) return;
+            ruta.push(actual);
+            actual = hijo;
+            i += hijo.etiqueta.length();
+        }
+        actual.restar(clave, libros);
+        if (actual.terminal() || actual == raiz) return;
+        Nodo padre = ruta.pop();
+        if (actual.cantidadHijos == 0) {
+            padre.quitarHijo(padre.buscarHijo(actual.etiqueta.charAt(0)));
+            actual = padre;
+            if (actual == raiz || actual.terminal() || actual.cantidadHijos != 1) return;
+            padre = ruta.pop();
+        } else if (actual.cantidadHijos != 1) {
+            return;
+        }
+        // un nodo no terminal con un solo hijo se fusiona con él
+        Nodo unico = actual.hijos[0];
+        unico.etiqueta = actual.etiqueta + unico.etiqueta;
+        padre.hijos[padre.buscarHijo(actual.etiqueta.charAt(0))] = unico;
+    }
+
+    /** Claves del árbol cuyo apellido plegado es exactamente el del texto. */
+    List<String> exactas(String texto) {
+        List<String> resultado = new ArrayList<>();
+        Nodo nodo = descender(Normalizacion.plegar(texto), false);
+        if (nodo != null && nodo.terminal()) resultado.addAll(Arrays.asList(nodo.claves));
+        return resultado;
+    }
+
+    /**
+     * Claves cuyo apellido plegado empieza por el prefijo, en orden alfabético plegado,
+     * hasta {@code limite} claves.
+     */
+    List<String> conPrefijo(String prefijo, int limite) {
+        List<String> resultado = new ArrayList<>();
+        Nodo inicio = descender(Normalizacion.plegar(prefijo), true);
+        if (inicio == null || limite <= 0) return resultado;
+        // preorden con pila explícita: los hijos se apilan al revés para salir en orden
+        Deque<Nodo> pila = new ArrayDeque<>();
+        pila.push(inicio);
+        while (!pila.isEmpty()) {
+            Nodo nodo = pila.pop();
+            if (nodo.terminal()) {
+                for (String clave : nodo.claves) {
+                    resultado.add(clave);
+                    if (resultado.size() == limite) return resultado;
+                }
+            }
+            for (int i = nodo.cantidadHijos - 1; i >= 0; i--) pila.push(nodo.hijos[i]);
+        }
+        return resultado;
+    }
+
+    /**
+     * Claves a distancia de edición (Levenshtein, sobre el texto plegado) menor o igual a
+     * {@code maxDistancia}, ordenadas por distancia y luego alfabéticamente.
+     */
+    List<Coincidencia> aproximadas(String texto, int maxDistancia) {
+        BusquedaAproximada busqueda = new BusquedaAproximada(Normalizacion.plegar(texto), maxDistancia);
+        busqueda.visitar(raiz, 0);
+        List<Coincidencia> resultado = busqueda.resultado;
+        resultado.sort((a, b) -> a.distancia != b.distancia
+                ? Integer.compare(a.distancia, b.distancia) : a.clave.compareTo(b.clave));
+        return resultado;
+    }
+
+    /**
+     * Tabla de Levenshtein por bandas: con cota d, en la fila t (t caracteres del trie
+     * consumidos) solo pueden valer d o menos las columnas entre t - d y t + d, así cada
+     * carácter cuesta O(d) y no O(largo de la consulta). Las filas se reservan una vez por
+     * profundidad y se reutilizan entre ramas.
+     */
+    private static final class BusquedaAproximada {
+        private static final int INFINITO = Integer.MAX_VALUE / 2;
+        private final String consulta;
+        private final int maxima;
+        private int[][] filas;
+        final List<Coincidencia> resultado = new ArrayList<>();
+
+        BusquedaAproximada(String consulta, int maxima) {
+            this.consulta = consulta;
+            this.maxima = maxima;
+            this.filas = new int[consulta.length() + maxima + 2][];
+            int[] inicial = fila(0);
+            for (int j = 0; j <= consulta.length(); j++) inicial[j] = j <= maxima ? j : INFINITO;
+        }
+
+        private int[] fila(int t) {
+            if (t == filas.length) filas = Arrays.copyOf(filas, filas.length * 2);
+            if (filas[t] == null) filas[t] = new int[consulta.length() + 1];
+            return filas[t];
+        }
+
+        /**
+         * Visita el nodo con la fila {@code t} ya calculada hasta su padre y avanza por cada
+         * carácter de su etiqueta. La recursión tiene la profundidad del apellido más largo.
+         */
+        void visitar(Nodo nodo, int t) {
+            int m = consulta.length();
+            for (int k = 0; k < nodo.etiqueta.length(); k++) {
+                if (!avanzar(t, nodo.etiqueta.charAt(k))) return;
+                t++;
+            }
+            int[] actual = filas[t];
+            if (nodo.terminal() && t >= m - maxima && actual[m] <= maxima) {
+                for (String clave : nodo.claves) resultado.add(new Coincidencia(clave, actual[m]));
+            }
+            for (int i = 0; i < nodo.cantidadHijos; i++) visitar(nodo.hijos[i], t);
+        }
+
+        /** Calcula la fila t + 1; devuelve false si toda la banda supera la cota (poda). */
+        private boolean avanzar(int t, char c) {
+            int m = consulta.length();
+            int[] anterior = filas[t];
+            int[] siguiente = fila(t + 1);
+            int fila = t + 1;
+            int desde = Math.max(0, fila - maxima);
+            int hasta = Math.min(m, fila + maxima);
+            if (desde > hasta) return false;
+            // las celdas justo fuera de la banda valen infinito para los vecinos de la próxima fila
+            if (desde > 0) siguiente[desde - 1] = INFINITO;
+            if (hasta < m) siguiente[hasta + 1] = INFINITO;
+            int minimo = INFINITO;
+            for (int j = desde; j <= hasta; j++) {
+                int valor;
+                if (j == 0) {
+                    valor = fila;
+                } else {
+                    int sustitucion = anterior[j - 1] + (consulta.charAt(j - 1) == c ? 0 : 1);
+                    int borrado = j <= t + maxima ? anterior[j] + 1 : INFINITO;
+                    int insercion = j > desde ? siguiente[j - 1] + 1 : INFINITO;
+                    valor = Math.min(sustitucion, Math.min(borrado, insercion));
+                }
+                siguiente[j] = valor;
+                minimo = Math.min(minimo, valor);
+            }
+            // ninguna extensión de este prefijo puede bajar de la mínima de la banda
+            return minimo <= maxima;
+        }
+    }
+
+    /**
+     * Nodo donde termina el texto. Con {@code parcial} el texto puede terminar a mitad de una
+     * arista (búsqueda por prefijo) y se devuelve el nodo al que llega esa arista.
+     */
+    private Nodo descender(String texto, boolean parcial) {
+        Nodo actual = raiz;
+        int i = 0;
+        while (i < texto.length()) {
+            int posicion = actual.buscarHijo(texto.charAt(i));
+            if (posicion < 0) return null;
+            Nodo hijo = actual.hijos[posicion];
+            int comun = prefijoComun(hijo.etiqueta, texto, i);
+            if (comun < hijo.etiqueta.length()) {
+                return parcial && i + comun == texto.length() ? hijo : null;
+            }
+            actual = hijo;
+            i += comun;
+        }
+        return actual;
+    }
+
+    private static int prefijoComun(String etiqueta, String texto, int desde) {
+        int limite = Math.min(etiqueta.length(), texto.length() - desde);
+        int k = 0;
+        while (k < limite && etiqueta.charAt(k) == texto.charAt(desde + k)) k++;
+        return k;
+    }
+}
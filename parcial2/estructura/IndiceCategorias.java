@@ -0,0 +1,67 @@
+package estructura;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import modelo.Libro;
+
+/**
+ * Índice invertido categoría -> libros, mantenido por ArbolBST en cada inserción y eliminación.
+ * Las claves se normalizan (trim + minúsculas) y se internan, de modo que cada categoría
+ * distinta ocupa una sola cadena en memoria sin importar cuántos libros la usen.
+ */
+class IndiceCategorias {
+    private final Map<String, Set<Libro>> porCategoria;
+
+    IndiceCategorias() {
+        this.porCategoria = new HashMap<>();
+    }
+
+    void agregar(Libro libro) {
+        if (libro.getCategoria() == null) return;
+        String clave = normalizar(libro.getCategoria()).intern();
+        porCategoria.computeIfAbsent(clave, c -> new LinkedHashSet<>()).add(libro);
+    }
+
+    void quitar(Libro libro) {
+        if (libro.getCategoria() == null) return;
+        String clave = normalizar(libro.getCategoria());
+        Set<Libro> libros = porCategoria.get(clave);
+        if (libros == null) return;
+        libros.remove(libro);
+        if (libros.isEmpty()) porCategoria.remove(clave);
+    }
+
+    /**
+     * Libros de la categoría en orden de registro. Coste O(tamaño del resultado).
+     */
+    List<Libro> buscar(String categoria) {
+        Set<Libro> libros = porCategoria.get(normalizar(categoria));
+        return libros != null ? new ArrayList<>(libros) : new ArrayList<>();
+    }
+
+    int contar(String categoria) {
+        Set<Libro> libros = porCategoria.get(normalizar(categoria));
+        return libros != null ? libros.size() : 0;
+    }
+
+    /**
+     * Conteo por categoría normalizada, sin materializar las listas de libros.
+     */
+    Map<String, Integer> conteos() {
+        Map<String, Integer> conteos = new HashMap<>();
+        for (Map.Entry<String, Set<Libro>> e : porCategoria.entrySet()) {
+            conteos.put(e.getKey(), e.getValue().size());
+        }
+        return Collections.unmodifiableMap(conteos);
+    }
+
+    static String normalizar(String categoria) {
+        return categoria.trim().toLowerCase(Locale.ROOT);
+    }
+}
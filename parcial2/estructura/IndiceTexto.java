@@ -0,0 +1,133 @@
+package estructura;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import modelo.Libro;
+
+/**
+ * Índice invertido de palabras de título -> libros, mantenido por ArbolBST.
+ *
+ * Cada libro recibe un identificador entero creciente y cada palabra (plegada, sin tildes)
+ * una lista de identificadores: como los identificadores solo crecen, agregar al final
+ * mantiene las listas ordenadas sin reordenar. Una consulta de varias palabras intersecta
+ * las listas empezando por la más corta y buscando sus elementos en las demás con
+ * búsqueda exponencial, así el coste depende de la lista más corta y no del catálogo.
+ *
+ * Las bajas marcan el identificador como borrado (lápida) y las listas lo saltan; cuando
+ * las lápidas superan a los libros vivos el índice se reconstruye compacto.
+ */
+class IndiceTexto {
+    /** Lista ordenada de identificadores que crece por duplicación. */
+    private static final class Postings {
+        int[] ids = new int[2];
+        int cantidad;
+
+        void agregar(int id) {
+            if (cantidad == ids.length) ids = Arrays.copyOf(ids, cantidad * 2);
+            ids[cantidad++] = id;
+        }
+    }
+
+    private final Map<String, Postings> porPalabra = new HashMap<>();
+    private final Map<Libro, Integer> idPorLibro = new IdentityHashMap<>();
+    /** Libro de cada identificador; null si fue dado de baja. */
+    private final List<Libro> libroPorId = new ArrayList<>();
+    private int lapidas;
+
+    void agregar(Libro libro) {
+        int id = libroPorId.size();
+        libroPorId.add(libro);
+        idPorLibro.put(libro, id);
+        for (String palabra : palabras(libro)) {
+            porPalabra.computeIfAbsent(palabra, p -> new Postings()).agregar(id);
+        }
+    }
+
+    void quitar(Libro libro) {
+        Integer id = idPorLibro.remove(libro);
+        if (id == null) return;
+        libroPorId.set(id, null);
+        lapidas++;
+        if (lapidas > idPorLibro.size() && lapidas > 1024) compactar();
+    }
+
+    /**
+     * Libros cuyo título contiene todas las palabras de la consulta (sin distinguir
+     * mayúsculas ni tildes), en orden de alta.
+     */
+    List<Libro> buscar(String consulta) {
+        List<Libro> resultado = new ArrayList<>();
+        Set<String> terminos = new LinkedHashSet<>(Normalizacion.tokenizar(consulta));
+        if (terminos.isEmpty()) return resultado;
+        Postings[] listas = new Postings[terminos.size()];
+        int k = 0;
+        for (String termino : terminos) {
+            Postings postings = porPalabra.get(termino);
+            if (postings == null) return resultado;
+            listas[k++] = postings;
+        }
+        Arrays.sort(listas, (a, b) -> Integer.compare(a.cantidad, b.cantidad));
+
+        Postings menor = listas[0];
+        int[] cursores = new int[listas.length];
+        siguiente:
+        for (int i = 0; i < menor.cantidad; i++) {
+            int id = menor.ids[i];
+            if (libroPorId.get(id) == null) continue;
+            for (int j = 1; j < listas.length; j++) {
+                cursores[j] = buscarDesde(listas[j], cursores[j], id);
+                if (cursores[j] == listas[j].cantidad) break siguiente;
+                if (listas[j].ids[cursores[j]] != id) continue siguiente;
+            }
+            resultado.add(libroPorId.get(id));
+        }
+        return resultado;
+    }
+
+    /**
+     * Primera posición desde {@code desde} cuyo identificador es mayor o igual a {@code id}:
+     * avanza en saltos que se duplican y luego busca binariamente en el último salto.
+     */
+    private static int buscarDesde(Postings postings, int desde, int id) {
+        int[] ids = postings.ids;
+        int fin = postings.cantidad;
+        int salto = 1;
+        int bajo = desde;
+        int alto = desde;
+        while (alto < fin && ids[alto] < id) {
+            bajo = alto + 1;
+            alto = Math.min(fin, alto + salto);
+            salto <<= 1;
+        }
+        int posicion = Arrays.binarySearch(ids, bajo, Math.min(alto + 1, fin), id);
+        return posicion >= 0 ? posicion : -posicion - 1;
+    }
+
+    /** Renumera los libros vivos y reconstruye las listas sin lápidas. */
+    private void compactar() {
+        List<Libro> vivos = new ArrayList<>(idPorLibro.size());
+        for (Libro libro : libroPorId) {
+            if (libro != null) vivos.add(libro);
+        }
+        limpiar();
+        for (Libro libro : vivos) agregar(libro);
+    }
+
+    void limpiar() {
+        porPalabra.clear();
+        idPorLibro.clear();
+        libroPorId.clear();
+        lapidas = 0;
+    }
+
+    private static Set<String> palabras(Libro libro) {
+        // cada palabra una sola vez por libro: las listas no deben repetir identificadores
+        return new LinkedHashSet<>(Normalizacion.tokenizar(libro.getTitulo()));
+    }
+}
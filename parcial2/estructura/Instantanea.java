@@ -0,0 +1,102 @@
+package estructura;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import modelo.Libro;
+import modelo.NodoBST;
+
+/**
+ * Versión inmutable del árbol de autores publicada por {@link ArbolPersistente}.
+ * Se puede recorrer desde cualquier hilo sin candados. La pertenencia de libros al
+ * catálogo es la del momento de la instantánea; el estado de préstamo se lee de cada
+ * Libro, que es compartido, así que refleja el valor vigente.
+ */
+public final class Instantanea {
+    final NodoBST raiz;
+    private final int totalLibros;
+    private final long numero;
+
+    Instantanea(NodoBST raiz, int totalLibros, long numero) {
+        this.raiz = raiz;
+        this.totalLibros = totalLibros;
+        this.numero = numero;
+    }
+
+    /**
+     * Número de versión: crece en uno con cada cambio publicado.
+     */
+    public long numero() {
+        return numero;
+    }
+
+    public int contarLibros() {
+        return totalLibros;
+    }
+
+    public int contarAutores() {
+        return raiz == null ? 0 : raiz.tamanio;
+    }
+
+    public int altura() {
+        return raiz == null ? 0 : raiz.altura;
+    }
+
+    public List<Libro> buscarPorAutor(String autor) {
+        if (autor == null || autor.trim().isEmpty()) return new ArrayList<>();
+        NodoBST nodo = buscarNodo(ArbolBST.claveAutor(autor));
+        return nodo != null ? nodo.comoLista() : new ArrayList<>();
+    }
+
+    NodoBST buscarNodo(String clave) {
+        NodoBST actual = raiz;
+        while (actual != null) {
+            int cmp = clave.compareTo(actual.clave);
+            if (cmp == 0) return actual;
+            actual = cmp < 0 ? actual.izquierdo : actual.derecho;
+        }
+        return null;
+    }
+
+    public void forEachInOrden(Consumer<Libro> accion) {
+        ArbolBST.forEachInOrden(raiz, accion);
+    }
+
+    public List<Libro> recorridoInOrden() {
+        List<Libro> lista = new ArrayList<>(totalLibros);
+        forEachInOrden(lista::add);
+        return lista;
+    }
+
+    /**
+     * Recorrido perezoso por rango de apellidos; misma semántica que {@link ArbolBST#rangoAutores}.
+     */
+    public Iterator<Libro> rangoAutores(String desde, String hasta) {
+        return new IteradorInOrden(raiz, ArbolBST.normalizarCota(desde), ArbolBST.normalizarCota(hasta), true);
+    }
+
+    public Iterator<Libro> prefijoAutor(String prefijo) {
+        String cota = ArbolBST.normalizarCota(prefijo);
+        if (cota == null) cota = "";
+        return new IteradorInOrden(raiz, cota, cota, true);
+    }
+
+    /**
+     * Stream in-orden divisible por subárboles; como la versión es inmutable, se puede
+     * recorrer en paralelo sin candados.
+     */
+    public Stream<Libro> stream(boolean paralelo) {
+        return StreamSupport.stream(new SpliteratorInOrden(raiz, totalLibros), paralelo);
+    }
+
+    public List<Libro> listarPrestados() {
+        List<Libro> lista = new ArrayList<>();
+        forEachInOrden(libro -> {
+            if (!libro.isDisponible()) lista.add(libro);
+        });
+        return lista;
+    }
+}
@@ -0,0 +1,80 @@
+package estructura;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import modelo.Libro;
+import modelo.NodoBST;
+
+/**
+ * Recorrido InOrden perezoso con pila explícita, acotado opcionalmente por clave de autor.
+ * Al iniciar desciende solo por los nodos con clave mayor o igual a la cota inferior, y se
+ * detiene en el primer nodo que supera la cota superior: visitar k libros cuesta
+ * O(altura + k) tiempo y O(altura) memoria.
+ * No debe usarse mientras el árbol se modifica.
+ */
+class IteradorInOrden implements Iterator<Libro> {
+    private final Deque<NodoBST> pila;
+    private final String hasta;
+    private final boolean hastaEsPrefijo;
+    private NodoBST actual;
+    private int indice;
+
+    /**
+     * @param desde          clave mínima (inclusiva), o null para empezar por el primer autor.
+     * @param hasta          clave máxima, o null para llegar hasta el último autor.
+     * @param hastaEsPrefijo si es true también se incluyen las claves que empiezan por {@code hasta}.
+     */
+    IteradorInOrden(NodoBST raiz, String desde, String hasta, boolean hastaEsPrefijo) {
+        this.pila = new ArrayDeque<>();
+        this.hasta = hasta;
+        this.hastaEsPrefijo = hastaEsPrefijo;
+        NodoBST nodo = raiz;
+        while (nodo != null) {
+            if (desde == null || nodo.clave.compareTo(desde) >= 0) {
+                pila.push(nodo);
+                nodo = nodo.izquierdo;
+            } else {
+                nodo = nodo.derecho;
+            }
+        }
+        avanzarNodo();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return actual != null;
+    }
+
+    @Override
+    public Libro next() {
+        if (actual == null) throw new NoSuchElementException();
+        Libro libro = actual.libros[indice++];
+        if (indice == actual.cantidad) avanzarNodo();
+        return libro;
+    }
+
+    private void avanzarNodo() {
+        indice = 0;
+        if (pila.isEmpty()) {
+            actual = null;
+            return;
+        }
+        NodoBST nodo = pila.pop();
+        if (!dentroDeCota(nodo.clave)) {
+            pila.clear();
+            actual = null;
+            return;
+        }
+        for (NodoBST n = nodo.derecho; n != null; n = n.izquierdo) {
+            pila.push(n);
+        }
+        actual = nodo;
+    }
+
+    private boolean dentroDeCota(String clave) {
+        if (hasta == null) return true;
+        return clave.compareTo(hasta) <= 0 || (hastaEsPrefijo && clave.startsWith(hasta));
+    }
+}
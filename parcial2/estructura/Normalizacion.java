@@ -0,0 +1,55 @@
+package estructura;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Plegado de texto para búsquedas: minúsculas y sin marcas diacríticas, de modo que
+ * "Páramo", "PARAMO" y "páramo" comparen igual. Se descompone en NFD y se descartan las
+ * marcas combinantes; el texto ASCII (el caso común) no pasa por el normalizador.
+ */
+public final class Normalizacion {
+
+    private Normalizacion() {
+    }
+
+    public static String plegar(String texto) {
+        if (texto == null) return null;
+        boolean ascii = true;
+        for (int i = 0; i < texto.length() && ascii; i++) ascii = texto.charAt(i) < 0x80;
+        if (ascii) return texto.toLowerCase(Locale.ROOT);
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(descompuesto.length());
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            int tipo = Character.getType(c);
+            if (tipo != Character.NON_SPACING_MARK && tipo != Character.COMBINING_SPACING_MARK
+                    && tipo != Character.ENCLOSING_MARK) {
+                sb.append(c);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Palabras del texto ya plegadas: secuencias de letras o dígitos; todo lo demás separa.
+     */
+    public static List<String> tokenizar(String texto) {
+        List<String> tokens = new ArrayList<>();
+        if (texto == null) return tokens;
+        String plegado = plegar(texto);
+        int inicio = -1;
+        for (int i = 0; i <= plegado.length(); i++) {
+            boolean enPalabra = i < plegado.length() && Character.isLetterOrDigit(plegado.charAt(i));
+            if (enPalabra && inicio < 0) {
+                inicio = i;
+            } else if (!enPalabra && inicio >= 0) {
+                tokens.add(plegado.substring(inicio, i));
+                inicio = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,107 @@
+package estructura;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import modelo.Libro;
+import modelo.NodoBST;
+
+/**
+ * Spliterator in-orden que se divide por subárboles, para recorrer el catálogo con
+ * streams paralelos o tareas ForkJoin sin copiar los libros a una lista.
+ *
+ * El trabajo pendiente es una pila de nodos: cada entrada representa "los libros del nodo
+ * y luego todo su subárbol derecho", y la cima va primero en orden. Dividir entrega como
+ * prefijo todas las entradas salvo la del fondo (que conserva el subárbol derecho más
+ * grande); si solo queda una, el prefijo son los libros de ese nodo y este spliterator
+ * continúa con su subárbol derecho. En un árbol balanceado cada división parte el
+ * trabajo aproximadamente a la mitad.
+ *
+ * No admite modificaciones concurrentes del árbol durante el recorrido.
+ */
+final class SpliteratorInOrden implements Spliterator<Libro> {
+    private Deque<NodoBST> pila;
+    /** Nodo cuyos libros se están emitiendo (ya fuera de la pila), o null. */
+    private NodoBST nodo;
+    private int indice;
+    private long estimado;
+
+    SpliteratorInOrden(NodoBST raiz, long totalLibros) {
+        this(new ArrayDeque<>(), totalLibros);
+        empujarIzquierda(raiz);
+    }
+
+    private SpliteratorInOrden(Deque<NodoBST> pila, long estimado) {
+        this.pila = pila;
+        this.estimado = estimado;
+    }
+
+    private void empujarIzquierda(NodoBST actual) {
+        while (actual != null) {
+            pila.push(actual);
+            actual = actual.izquierdo;
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Libro> accion) {
+        while (nodo == null || indice == nodo.cantidad) {
+            if (nodo != null) {
+                empujarIzquierda(nodo.derecho);
+                nodo = null;
+            }
+            if (pila.isEmpty()) return false;
+            nodo = pila.pop();
+            indice = 0;
+        }
+        accion.accept(nodo.libros[indice++]);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Libro> accion) {
+        if (nodo != null) {
+            while (indice < nodo.cantidad) accion.accept(nodo.libros[indice++]);
+            empujarIzquierda(nodo.derecho);
+            nodo = null;
+        }
+        while (!pila.isEmpty()) {
+            NodoBST actual = pila.pop();
+            for (int i = 0; i < actual.cantidad; i++) accion.accept(actual.libros[i]);
+            empujarIzquierda(actual.derecho);
+        }
+    }
+
+    @Override
+    public Spliterator<Libro> trySplit() {
+        // a mitad de un nodo no se divide: la pila ya no describe todo lo pendiente
+        if (nodo != null || pila.isEmpty()) return null;
+        if (pila.size() == 1) {
+            NodoBST unico = pila.peek();
+            if (unico.derecho == null) return null;
+            pila.pop();
+            empujarIzquierda(unico.derecho);
+            estimado = Math.max(0, estimado - unico.cantidad);
+            return Spliterators.spliterator(unico.libros, 0, unico.cantidad, ORDERED | NONNULL);
+        }
+        NodoBST fondo = pila.removeLast();
+        Deque<NodoBST> prefijo = pila;
+        pila = new ArrayDeque<>();
+        pila.push(fondo);
+        long mitad = estimado >>> 1;
+        estimado -= mitad;
+        return new SpliteratorInOrden(prefijo, mitad);
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimado;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
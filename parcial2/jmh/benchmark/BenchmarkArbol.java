@@ -0,0 +1,173 @@
+package benchmark;
+
+import estructura.ArbolBST;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import modelo.Libro;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Los escenarios de {@link BenchmarkCatalogo} como benchmarks JMH, a 1k, 100k y 1M libros
+ * generados igual que allí. Por defecto el árbol es el balanceado; el simple se mide con
+ * {@code -p balanceado=false} (la inserción ordenada es O(n²): conviene limitarlo con
+ * {@code -p tamanio=1000}).
+ *
+ * Uso (desde la carpeta parcial2):
+ *   mvn -Pjmh package
+ *   java -jar target/benchmarks.jar BenchmarkArbol
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class BenchmarkArbol {
+    /** Claves de consulta precalculadas; potencia de dos para rotar con una máscara. */
+    private static final int CONSULTAS = 1 << 12;
+    private static final int ELIMINACIONES = 1_000;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int tamanio;
+
+    @Param({ "true" })
+    public boolean balanceado;
+
+    private Libro[] aleatorios;
+    private Libro[] ordenados;
+    private ArbolBST arbol;
+    private String[] autores;
+    private String[] isbns;
+    private String[] categorias;
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        aleatorios = BenchmarkCatalogo.generarLibros(tamanio, new Random(42));
+        ordenados = aleatorios.clone();
+        Arrays.sort(ordenados, Comparator.comparing(l -> l.getAutor().toLowerCase()));
+        arbol = new ArbolBST(balanceado);
+        for (Libro libro : aleatorios) arbol.insertar(libro);
+
+        Random random = new Random(7);
+        List<Libro> catalogo = arbol.recorridoInOrden();
+        autores = new String[CONSULTAS];
+        isbns = new String[CONSULTAS];
+        categorias = new String[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            Libro libro = catalogo.get(random.nextInt(catalogo.size()));
+            autores[i] = libro.getAutor();
+            isbns[i] = libro.getIsbn();
+            categorias[i] = aleatorios[random.nextInt(tamanio)].getCategoria();
+        }
+    }
+
+    /** Construye el árbol completo insertando los libros en orden aleatorio; una operación son n inserciones. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ArbolBST insertarAleatorio() {
+        ArbolBST nuevo = new ArbolBST(balanceado);
+        for (Libro libro : aleatorios) nuevo.insertar(libro);
+        return nuevo;
+    }
+
+    /** Como {@link #insertarAleatorio}, pero con los libros ordenados por autor (el peor caso del árbol simple). */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ArbolBST insertarOrdenado() {
+        ArbolBST nuevo = new ArbolBST(balanceado);
+        for (Libro libro : ordenados) nuevo.insertar(libro);
+        return nuevo;
+    }
+
+    @Benchmark
+    public List<Libro> buscarPorAutor() {
+        return arbol.buscarPorAutor(autores[siguiente++ & (CONSULTAS - 1)]);
+    }
+
+    @Benchmark
+    public Libro buscarPorIsbn() {
+        return arbol.buscarPorIsbn(isbns[siguiente++ & (CONSULTAS - 1)]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Libro> buscarPorCategoria() {
+        return arbol.buscarPorCategoria(categorias[siguiente++ & (CONSULTAS - 1)]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Libro> recorridoInOrden() {
+        return arbol.recorridoInOrden();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Libro> recorridoPreOrden() {
+        return arbol.recorridoPreOrden();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Libro> recorridoPostOrden() {
+        return arbol.recorridoPostOrden();
+    }
+
+    /**
+     * Árbol propio de la eliminación: antes de cada invocación se reinsertan (sin medir) los
+     * libros eliminados en la anterior y se eligen otros {@value #ELIMINACIONES} autores.
+     */
+    @State(Scope.Thread)
+    public static class Eliminacion {
+        private final Random random = new Random(11);
+        private Libro[] libros;
+        private ArbolBST arbol;
+        private Libro[] elegidos;
+
+        @Setup(Level.Trial)
+        public void preparar(BenchmarkArbol base) {
+            libros = base.aleatorios;
+            arbol = new ArbolBST(base.balanceado);
+            for (Libro libro : libros) arbol.insertar(libro);
+        }
+
+        @Setup(Level.Invocation)
+        public void elegir() {
+            if (elegidos != null) {
+                for (Libro libro : elegidos) arbol.insertar(libro);
+            }
+            // los apellidos generados son únicos: cada autor elegido es un nodo distinto
+            Libro[] copia = libros.clone();
+            for (int i = 0; i < ELIMINACIONES; i++) {
+                int j = i + random.nextInt(copia.length - i);
+                Libro libro = copia[j];
+                copia[j] = copia[i];
+                copia[i] = libro;
+            }
+            elegidos = Arrays.copyOf(copia, ELIMINACIONES);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ELIMINACIONES)
+    public int eliminarPorAutor(Eliminacion estado) {
+        for (Libro libro : estado.elegidos) estado.arbol.eliminarPorAutor(libro.getAutor());
+        return estado.arbol.contarNodos();
+    }
+}
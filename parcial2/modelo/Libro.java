@@ -45,18 +45,19 @@ public class Libro {
         return categoria;
     }
 
-    public boolean isDisponible() {
+    public synchronized boolean isDisponible() {
         return disponible;
     }
 
-    public String getPrestatario() {
+    public synchronized String getPrestatario() {
         return prestatario;
     }
 
     /**
      * Prestar el libro a un prestatario. Lanza IllegalStateException si no está disponible.
+     * Es sincronizado: dos hilos no pueden prestar el mismo ejemplar a la vez.
      */
-    public void prestar(String nombrePrestatario) {
+    public synchronized void prestar(String nombrePrestatario) {
         if (!disponible) {
             throw new IllegalStateException("El libro ya está prestado a: " + prestatario);
         }
@@ -70,7 +71,7 @@ public class Libro {
     /**
      * Devolver el libro. Lanza IllegalStateException si ya está disponible.
      */
-    public void devolver() {
+    public synchronized void devolver() {
         if (disponible) {
             throw new IllegalStateException("El libro ya está disponible (no estaba prestado).");
         }
@@ -79,7 +80,7 @@ public class Libro {
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         String estado = disponible ? "Disponible" : "Prestado a: " + prestatario;
         return String.format("ISBN: %s | Título: %s | Autor: %s | Editorial: %s | Año: %d | Categoría: %s | %s",
                 isbn, titulo, autor, editorial, anioPublicacion, categoria, estado);
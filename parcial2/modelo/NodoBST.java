@@ -1,13 +1,84 @@
 package modelo;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nodo del árbol: agrupa todos los libros cuyo autor comparte apellido.
+ * Los libros se guardan en un arreglo compacto que crece bajo demanda.
+ * La clave (apellido normalizado) se calcula una sola vez al crear el nodo,
+ * así los descensos comparan sin volver a procesar el campo autor.
+ * Cada nodo guarda además la altura y el tamaño (número de nodos) de su subárbol.
+ */
 public class NodoBST {
-    public Libro libro;
+    public String clave;
+    public Libro[] libros;
+    public int cantidad;
     public NodoBST izquierdo;
     public NodoBST derecho;
+    public int altura;
+    public int tamanio;
 
-    public NodoBST(Libro libro) {
-        this.libro = libro;
+    public NodoBST(Libro libro, String clave) {
+        this.clave = clave;
+        this.libros = new Libro[] { libro };
+        this.cantidad = 1;
         this.izquierdo = null;
         this.derecho = null;
+        this.altura = 1;
+        this.tamanio = 1;
+    }
+
+    /**
+     * Nodo con hijos ya construidos; altura y tamaño se calculan a partir de ellos.
+     * Lo usa el árbol persistente, que nunca modifica un nodo después de publicarlo.
+     */
+    public NodoBST(String clave, Libro[] libros, int cantidad, NodoBST izquierdo, NodoBST derecho) {
+        this.clave = clave;
+        this.libros = libros;
+        this.cantidad = cantidad;
+        this.izquierdo = izquierdo;
+        this.derecho = derecho;
+        this.altura = 1 + Math.max(izquierdo == null ? 0 : izquierdo.altura, derecho == null ? 0 : derecho.altura);
+        this.tamanio = 1 + (izquierdo == null ? 0 : izquierdo.tamanio) + (derecho == null ? 0 : derecho.tamanio);
+    }
+
+    public Libro primero() {
+        return libros[0];
+    }
+
+    public void agregar(Libro libro) {
+        if (cantidad == libros.length) {
+            Libro[] ampliado = new Libro[libros.length * 2];
+            System.arraycopy(libros, 0, ampliado, 0, cantidad);
+            libros = ampliado;
+        }
+        libros[cantidad++] = libro;
+    }
+
+    /**
+     * Quita el libro con el ISBN indicado conservando el orden de los restantes.
+     * @return el libro quitado, o null si no estaba en el nodo.
+     */
+    public Libro quitarPorIsbn(String isbn) {
+        for (int i = 0; i < cantidad; i++) {
+            if (isbn.equals(libros[i].getIsbn())) {
+                Libro quitado = libros[i];
+                System.arraycopy(libros, i + 1, libros, i, cantidad - i - 1);
+                libros[--cantidad] = null;
+                return quitado;
+            }
+        }
+        return null;
+    }
+
+    public void agregarA(List<Libro> lista) {
+        for (int i = 0; i < cantidad; i++) lista.add(libros[i]);
+    }
+
+    public List<Libro> comoLista() {
+        List<Libro> lista = new ArrayList<>(cantidad);
+        agregarA(lista);
+        return lista;
     }
 }
@@ -1,94 +1,911 @@
 package servicio;
 
 import estructura.ArbolBST;
+import estructura.ArbolPersistente;
+import estructura.CatalogoMapeado;
+import estructura.Consulta;
+import estructura.Instantanea;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import modelo.Libro;
 
+/**
+ * Fachada del catálogo: registro, búsquedas, préstamos y devoluciones sobre el árbol.
+ * Es segura para uso concurrente.
+ */
 public class BibliotecaService {
-    public  ArbolBST arbol;
+    private static final int CAPACIDAD_CACHE = 1024;
+    private static final Duration PLAZO_PRESTAMO = Duration.ofDays(14);
+    private static final Duration PLAZO_MAXIMO = Duration.ofDays(3650);
+    /* prefijos de las claves de la caché según el tipo de consulta */
+    private static final String POR_AUTOR = "a:";
+    private static final String POR_CATEGORIA = "c:";
+
+    private final ArbolBST arbol;
+    /** Última instantánea construida; null tras cada alta o baja (ver {@link #instantanea()}). */
+    private volatile Instantanea ultimaInstantanea;
+    private final Object construccionInstantanea = new Object();
+    /** Altas y bajas aplicadas, con el candado de escritura: numera las instantáneas. */
+    private long cambios;
+    /**
+     * Libros prestados, actualizado en cada préstamo, devolución, alta y baja hechos a través
+     * del servicio: las estadísticas y el listado de prestados no recorren el catálogo.
+     */
+    private final Set<Libro> prestados;
+    /**
+     * Las consultas toman el candado de lectura y corren en paralelo; altas y bajas toman el
+     * de escritura y se serializan. Préstamos y devoluciones no cambian la forma del árbol:
+     * van con el de lectura y su atomicidad la da cada Libro (prestar/devolver son sincronizados).
+     */
+    private final Lock lectura;
+    private final Lock escritura;
+    /**
+     * Resultados de las consultas por autor y por categoría, como listas inmodificables
+     * compartidas. Cada alta o baja invalida solo las entradas de su apellido y su categoría
+     * ({@link #invalidar}); préstamos y devoluciones no, porque no cambian qué libros hay en
+     * un resultado y los libros en caché son los mismos objetos del catálogo.
+     */
+    private final CacheConsultas<String, List<Libro>> cache;
+    private final Metricas metricas;
+    /**
+     * Cada préstamo con su fecha, su vencimiento (según {@link #setPlazoPrestamo}) y su
+     * devolución: quién tiene o tuvo un libro y qué préstamos están vencidos se responden
+     * sin recorrer el catálogo.
+     */
+    private final HistorialPrestamos historial = new HistorialPrestamos();
+    private volatile boolean historialPausado;
+    private volatile Duration plazoPrestamo = PLAZO_PRESTAMO;
+    private volatile DiarioOperaciones diario;
+    private PersistenciaCatalogo persistencia;
 
     public BibliotecaService() {
-        this.arbol = new ArbolBST();
+        this(false);
+    }
+
+    /**
+     * @param balanceado si es true el catálogo usa un árbol AVL, que mantiene
+     *                   las operaciones en O(log n) aunque la carga llegue ordenada.
+     */
+    public BibliotecaService(boolean balanceado) {
+        this(balanceado, CacheConsultas.Politica.LRU, CAPACIDAD_CACHE);
+    }
+
+    /**
+     * @param politicaCache política de desalojo de la caché de consultas.
+     * @param capacidadCache resultados guardados como máximo (0 desactiva la caché).
+     */
+    public BibliotecaService(boolean balanceado, CacheConsultas.Politica politicaCache, int capacidadCache) {
+        this.cache = new CacheConsultas<>(politicaCache, capacidadCache);
+        this.arbol = new ArbolBST(balanceado);
+        this.prestados = ConcurrentHashMap.newKeySet();
+        ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+        this.lectura = candado.readLock();
+        this.escritura = candado.writeLock();
+        this.metricas = new Metricas(this);
+    }
+
+    /**
+     * Abre un catálogo duradero guardado en el directorio (lo crea si no existe): carga la
+     * última instantánea, reaplica el diario posterior y desde ahí registra cada cambio:
+     * los métodos que cambian el catálogo retornan cuando el cambio ya está en disco.
+     * Se debe llamar a {@link #cerrar()} al terminar.
+     */
+    public static BibliotecaService abrir(Path directorio, boolean balanceado) throws IOException {
+        BibliotecaService servicio = new BibliotecaService(balanceado);
+        servicio.persistencia = PersistenciaCatalogo.abrir(directorio, servicio, PersistenciaCatalogo.UMBRAL_INSTANTANEA);
+        return servicio;
+    }
+
+    /**
+     * Guarda una instantánea final y cierra el diario. Después de cerrar, los cambios fallan
+     * con IllegalStateException. No hace nada si el catálogo no es duradero.
+     */
+    public void cerrar() throws IOException {
+        if (persistencia != null) persistencia.close();
+    }
+
+    /** Fallo de la última instantánea en segundo plano, o null (ver {@link Metricas#getFallaInstantanea()}). */
+    Exception fallaInstantanea() {
+        return persistencia == null ? null : persistencia.fallaInstantanea();
+    }
+
+    void adjuntarDiario(DiarioOperaciones diario) {
+        this.diario = diario;
+    }
+
+    /** Anota un cambio en el diario, si hay uno; se llama dentro de la sección crítica del cambio. */
+    private CompletableFuture<Void> anotar(Function<DiarioOperaciones, CompletableFuture<Void>> registro) {
+        DiarioOperaciones actual = diario;
+        return actual == null ? null : registro.apply(actual);
+    }
+
+    /**
+     * Anota un préstamo en el historial y en el diario con el monitor del historial tomado,
+     * así una instantánea tomada con ese monitor contiene exactamente los préstamos del diario
+     * hasta su secuencia. Se llama dentro del monitor del libro.
+     */
+    private CompletableFuture<Void> anotarPrestamo(Libro libro, Duration plazo) {
+        long ahora = System.currentTimeMillis();
+        long vence = ahora + plazo.toMillis();
+        synchronized (historial) {
+            if (!historialPausado) historial.prestar(libro.getIsbn(), libro.getPrestatario(), ahora, vence);
+            return anotar(d -> d.prestar(libro.getIsbn(), libro.getPrestatario(), vence));
+        }
     }
 
-    public ArbolBST getArbol() {
+    private CompletableFuture<Void> anotarDevolucion(Libro libro) {
+        long ahora = System.currentTimeMillis();
+        synchronized (historial) {
+            if (!historialPausado) historial.devolver(libro.getIsbn(), ahora);
+            return anotar(d -> d.devolver(libro.getIsbn()));
+        }
+    }
+
+    /**
+     * Anota el alta en el diario y, si el libro entra ya prestado, abre su préstamo (si no
+     * figuraba), con el monitor del historial como {@link #anotarPrestamo}. El orden de los
+     * monitores es siempre libro -> historial.
+     */
+    private CompletableFuture<Void> anotarAlta(Libro libro) {
+        long ahora = System.currentTimeMillis();
+        synchronized (libro) {
+            synchronized (historial) {
+                if (!historialPausado && !libro.isDisponible()) {
+                    historial.asegurarActivo(libro.getIsbn(), libro.getPrestatario(), ahora, ahora + plazoPrestamo.toMillis());
+                }
+                return anotar(d -> d.registrar(libro));
+            }
+        }
+    }
+
+    /**
+     * Anota la baja en el diario y cierra, en la fecha de la baja, los préstamos de los libros
+     * eliminados que estaban prestados. Su estado se lee antes de tomar el monitor del historial.
+     */
+    private CompletableFuture<Void> anotarBaja(List<Libro> libros,
+                                               Function<DiarioOperaciones, CompletableFuture<Void>> registro) {
+        List<String> conPrestamo = new ArrayList<>();
+        for (Libro libro : libros) {
+            if (!libro.isDisponible()) conPrestamo.add(libro.getIsbn());
+        }
+        long ahora = System.currentTimeMillis();
+        synchronized (historial) {
+            if (!historialPausado) conPrestamo.forEach(isbn -> historial.devolver(isbn, ahora));
+            return anotar(registro);
+        }
+    }
+
+    HistorialPrestamos historial() {
+        return historial;
+    }
+
+    /** Durante la recuperación el historial se reconstruye desde el diario, no desde las operaciones reaplicadas. */
+    void pausarHistorial(boolean pausado) {
+        this.historialPausado = pausado;
+    }
+
+    /**
+     * Lleva el historial al estado del catálogo: cierra los préstamos activos cuyo libro ya no
+     * está prestado a ese prestatario y abre, con fecha de hoy, los que el historial no tenía.
+     */
+    void conciliarHistorial() {
+        long ahora = System.currentTimeMillis();
+        long vence = ahora + plazoPrestamo.toMillis();
+        // los estados se leen antes de tomar el monitor del historial (orden libro -> historial)
+        Map<String, String> prestatarios = new HashMap<>();
+        for (Libro libro : prestados) {
+            synchronized (libro) {
+                if (!libro.isDisponible()) prestatarios.put(libro.getIsbn(), libro.getPrestatario());
+            }
+        }
+        synchronized (historial) {
+            historial.conciliar(prestatarios::get, ahora);
+            prestatarios.forEach((isbn, nombre) -> historial.asegurarActivo(isbn, nombre, ahora, vence));
+        }
+    }
+
+    /**
+     * Acceso directo al árbol vivo, sin sincronización: solo para uso dentro del paquete.
+     */
+    ArbolBST getArbol() {
         return arbol;
     }
 
+    /**
+     * Métricas de latencia, descensos y aciertos de este servicio (desactivadas al crearlo).
+     */
+    public Metricas metricas() {
+        return metricas;
+    }
+
+    private <T> T leer(Supplier<T> consulta) {
+        lectura.lock();
+        try {
+            return consulta.get();
+        } finally {
+            lectura.unlock();
+        }
+    }
+
+    /** Como {@link #leer(Supplier)}, midiendo la latencia de la operación (espera del candado incluida). */
+    private <T> T leer(Metricas.Operacion operacion, Supplier<T> consulta) {
+        long inicio = metricas.iniciar();
+        try {
+            return leer(consulta);
+        } finally {
+            metricas.registrar(operacion, inicio);
+        }
+    }
+
+    /**
+     * Aplica un cambio con el candado de escritura y espera su confirmación en el diario;
+     * la latencia medida incluye ambas esperas. El cambio se anota dentro de la sección
+     * crítica, así el orden del diario es el orden en que se aplicaron; la espera ocurre
+     * fuera del candado, de modo que varias operaciones comparten un mismo fsync.
+     */
+    private void escribir(Metricas.Operacion operacion, Supplier<CompletableFuture<Void>> cambio) {
+        long inicio = metricas.iniciar();
+        try {
+            DiarioOperaciones.esperar(escribirYObtener(cambio));
+        } finally {
+            metricas.registrar(operacion, inicio);
+        }
+    }
+
+    private <T> T escribirYObtener(Supplier<T> cambio) {
+        escritura.lock();
+        try {
+            return cambio.get();
+        } finally {
+            escritura.unlock();
+        }
+    }
+
     public void registrarLibro(Libro libro) {
-        arbol.insertar(libro);
+        escribir(Metricas.Operacion.REGISTRAR, () -> {
+            arbol.insertar(libro);
+            descartarInstantanea();
+            if (!libro.isDisponible()) prestados.add(libro);
+            invalidar(libro);
+            return anotarAlta(libro);
+        });
+    }
+
+    /**
+     * Carga masiva de libros: ordena una vez, agrupa apellidos repetidos y reconstruye el
+     * catálogo balanceado en O(n) (ver {@link ArbolBST#cargarMasivo}). Los libros se leen
+     * del iterador antes de tomar el candado de escritura.
+     * @return libros rechazados por ISBN duplicado.
+     */
+    public List<Libro> cargarMasivo(Iterator<Libro> libros) {
+        List<Libro> lista = new ArrayList<>();
+        libros.forEachRemaining(lista::add);
+        return cargarLista(lista);
+    }
+
+    public List<Libro> cargarMasivo(Stream<Libro> libros) {
+        return cargarLista(libros.collect(Collectors.toCollection(ArrayList::new)));
+    }
+
+    private List<Libro> cargarLista(List<Libro> lista) {
+        List<Libro> rechazados = new ArrayList<>();
+        escribir(Metricas.Operacion.CARGA_MASIVA, () -> {
+            rechazados.addAll(arbol.cargarMasivo(lista));
+            descartarInstantanea();
+            cache.limpiar();
+            // se anota lo que el árbol aceptó, en el orden de la lista; el árbol decide qué
+            // duplicado gana, así que los rechazos se descuentan por identidad (y por cuenta,
+            // por si el mismo objeto viene repetido)
+            Map<Libro, Integer> pendientes = new IdentityHashMap<>();
+            for (Libro libro : rechazados) pendientes.merge(libro, 1, Integer::sum);
+            CompletableFuture<Void> ultima = null;
+            for (Libro libro : lista) {
+                Integer rechazos = pendientes.remove(libro);
+                if (rechazos != null) {
+                    if (rechazos > 1) pendientes.put(libro, rechazos - 1);
+                    continue;
+                }
+                if (!libro.isDisponible()) prestados.add(libro);
+                ultima = anotarAlta(libro);
+            }
+            // el diario confirma en orden: el último registro cubre a todos los anteriores
+            return ultima;
+        });
+        return rechazados;
+    }
+
+    /**
+     * Registra un lote de libros con un solo candado de escritura y una sola espera del
+     * diario. A diferencia de {@link #cargarMasivo} inserta libro a libro en O(log n), así
+     * que conviene para lotes pequeños frente al catálogo (importaciones por partes).
+     * @return libros rechazados (nulos o con ISBN ya registrado), en el orden del lote.
+     */
+    public List<Libro> registrarLote(List<Libro> libros) {
+        List<Libro> rechazados = new ArrayList<>();
+        escribir(Metricas.Operacion.REGISTRAR_LOTE, () -> {
+            CompletableFuture<Void> ultima = null;
+            for (Libro libro : libros) {
+                try {
+                    arbol.insertar(libro);
+                } catch (IllegalArgumentException ex) {
+                    rechazados.add(libro);
+                    continue;
+                }
+                descartarInstantanea();
+                if (!libro.isDisponible()) prestados.add(libro);
+                invalidar(libro);
+                ultima = anotarAlta(libro);
+            }
+            return ultima;
+        });
+        return rechazados;
+    }
+
+    /**
+     * Importa un CSV por lotes con {@link CatalogoCsv#importar}; las filas inválidas o
+     * duplicadas se rechazan sin detener la importación.
+     */
+    public CatalogoCsv.ResultadoImportacion importarCsv(Path archivo) throws IOException {
+        return CatalogoCsv.importar(archivo, this);
+    }
+
+    /**
+     * Exporta la instantánea vigente a CSV en orden alfabético de autor.
+     * @return cantidad de libros escritos.
+     */
+    public long exportarCsv(Path archivo) throws IOException {
+        return CatalogoCsv.exportar(instantanea(), archivo);
     }
 
     public List<Libro> buscarPorAutor(String autor) {
-        return arbol.buscarPorAutor(autor);
+        if (autor == null || autor.trim().isEmpty()) return Collections.emptyList();
+        return leer(Metricas.Operacion.BUSCAR_AUTOR, () -> cache.obtener(POR_AUTOR + ArbolBST.claveAutor(autor),
+                clave -> Collections.unmodifiableList(arbol.buscarPorAutor(autor))));
     }
 
     public Libro buscarPorIsbn(String isbn) {
-        return arbol.buscarPorIsbn(isbn);
+        Libro libro = leer(Metricas.Operacion.BUSCAR_ISBN, () -> arbol.buscarPorIsbn(isbn));
+        metricas.busquedaIsbn(libro != null);
+        return libro;
     }
 
     public void eliminarPorAutor(String autor) {
-        arbol.eliminarPorAutor(autor);
+        escribir(Metricas.Operacion.ELIMINAR, () -> {
+            List<Libro> libros = arbol.buscarPorAutor(autor);
+            arbol.eliminarPorAutor(autor);
+            descartarInstantanea();
+            libros.forEach(prestados::remove);
+            libros.forEach(this::invalidar);
+            return anotarBaja(libros, d -> d.eliminarAutor(autor));
+        });
+    }
+
+    public void eliminarLibro(String autor, String isbn) {
+        escribir(Metricas.Operacion.ELIMINAR, () -> {
+            Libro libro = arbol.buscarPorIsbn(isbn);
+            arbol.eliminarLibro(autor, isbn);
+            descartarInstantanea();
+            if (libro != null) {
+                prestados.remove(libro);
+                invalidar(libro);
+            }
+            List<Libro> eliminados = libro == null ? Collections.emptyList() : Collections.singletonList(libro);
+            return anotarBaja(eliminados, d -> d.eliminarLibro(autor, isbn.trim()));
+        });
     }
 
     public List<Libro> listarInOrden() {
-        return arbol.recorridoInOrden();
+        return leer(Metricas.Operacion.LISTAR, arbol::recorridoInOrden);
+    }
+
+    /**
+     * Versión inmutable del catálogo en este instante, que los reportes recorren sin candados
+     * y que sigue siendo válida aunque después se registren o eliminen libros. Se construye
+     * al pedirla (O(n), con el candado de lectura) y se reutiliza hasta el próximo alta o
+     * baja: los cambios no mantienen una segunda copia del árbol.
+     */
+    public Instantanea instantanea() {
+        Instantanea vigente = ultimaInstantanea;
+        if (vigente != null) return vigente;
+        return leer(() -> {
+            // con el candado de lectura nadie da altas ni bajas; el monitor evita copiar dos veces
+            synchronized (construccionInstantanea) {
+                Instantanea copia = ultimaInstantanea;
+                if (copia == null) {
+                    copia = ArbolPersistente.instantaneaDe(arbol, cambios);
+                    ultimaInstantanea = copia;
+                }
+                return copia;
+            }
+        });
+    }
+
+    /** Con el candado de escritura, tras un alta o baja: la próxima instantánea se reconstruye. */
+    private void descartarInstantanea() {
+        cambios++;
+        ultimaInstantanea = null;
+    }
+
+    /**
+     * Exporta la instantánea vigente al formato columnar de solo lectura, que se abre
+     * mapeado en memoria con {@link CatalogoMapeado#abrir}.
+     */
+    public void exportarColumnar(Path archivo) throws IOException {
+        CatalogoMapeado.escribir(instantanea(), archivo);
+    }
+
+    /**
+     * Autores entre {@code desde} y {@code hasta}; ver {@link ArbolBST#rangoAutores}.
+     * Si hay una instantánea vigente la recorre perezosamente, sin candados; si no, copia el
+     * rango con el candado de lectura en vez de construir una instantánea entera para él.
+     */
+    public Iterator<Libro> rangoAutores(String desde, String hasta) {
+        Instantanea vigente = ultimaInstantanea;
+        if (vigente != null) return vigente.rangoAutores(desde, hasta);
+        return copiarRecorrido(() -> arbol.rangoAutores(desde, hasta));
+    }
+
+    /**
+     * Autores cuyo apellido empieza por el prefijo (autocompletado); ver {@link #rangoAutores}.
+     */
+    public Iterator<Libro> prefijoAutor(String prefijo) {
+        Instantanea vigente = ultimaInstantanea;
+        if (vigente != null) return vigente.prefijoAutor(prefijo);
+        return copiarRecorrido(() -> arbol.prefijoAutor(prefijo));
+    }
+
+    private Iterator<Libro> copiarRecorrido(Supplier<Iterator<Libro>> recorrido) {
+        List<Libro> libros = leer(() -> {
+            List<Libro> copia = new ArrayList<>();
+            recorrido.get().forEachRemaining(copia::add);
+            return copia;
+        });
+        return Collections.unmodifiableList(libros).iterator();
+    }
+
+    /**
+     * Entrega cada libro en orden alfabético al consumidor, sin construir una lista.
+     * El consumidor se ejecuta con el candado de lectura tomado: no debe modificar el catálogo.
+     */
+    public void forEachInOrden(Consumer<Libro> accion) {
+        lectura.lock();
+        try {
+            arbol.forEachInOrden(accion);
+        } finally {
+            lectura.unlock();
+        }
     }
 
     public List<Libro> listarPreOrden() {
-        return arbol.recorridoPreOrden();
+        return leer(Metricas.Operacion.LISTAR, arbol::recorridoPreOrden);
     }
 
     public List<Libro> listarPostOrden() {
-        return arbol.recorridoPostOrden();
+        return leer(Metricas.Operacion.LISTAR, arbol::recorridoPostOrden);
     }
 
+    /** Presta el libro por el plazo vigente (ver {@link #setPlazoPrestamo}). */
     public void prestarLibro(String isbn, String nombrePrestatario) {
-        Libro libro = buscarPorIsbn(isbn);
-        if (libro == null) throw new IllegalArgumentException("ISBN no encontrado: " + isbn);
-        libro.prestar(nombrePrestatario);
+        prestarLibro(isbn, nombrePrestatario, plazoPrestamo);
+    }
+
+    /**
+     * Presta el libro con vencimiento a {@code plazo} desde ahora.
+     * @throws IllegalArgumentException si el plazo no es positivo o supera diez años.
+     */
+    public void prestarLibro(String isbn, String nombrePrestatario, Duration plazo) {
+        validarPlazo(plazo);
+        long inicio = metricas.iniciar();
+        CompletableFuture<Void> confirmacion;
+        lectura.lock();
+        try {
+            Libro libro = arbol.buscarPorIsbn(isbn);
+            if (libro == null) throw new IllegalArgumentException("ISBN no encontrado: " + isbn);
+            // el conjunto se actualiza dentro del monitor del libro para que un préstamo y una
+            // devolución concurrentes del mismo ejemplar no lo dejen desfasado (ni el diario)
+            synchronized (libro) {
+                libro.prestar(nombrePrestatario);
+                prestados.add(libro);
+                confirmacion = anotarPrestamo(libro, plazo);
+            }
+        } finally {
+            lectura.unlock();
+        }
+        try {
+            DiarioOperaciones.esperar(confirmacion);
+        } finally {
+            metricas.registrar(Metricas.Operacion.PRESTAR, inicio);
+        }
     }
 
     public void devolverLibro(String isbn) {
-        Libro libro = buscarPorIsbn(isbn);
-        if (libro == null) throw new IllegalArgumentException("ISBN no encontrado: " + isbn);
-        libro.devolver();
+        long inicio = metricas.iniciar();
+        CompletableFuture<Void> confirmacion;
+        lectura.lock();
+        try {
+            Libro libro = arbol.buscarPorIsbn(isbn);
+            if (libro == null) throw new IllegalArgumentException("ISBN no encontrado: " + isbn);
+            synchronized (libro) {
+                libro.devolver();
+                prestados.remove(libro);
+                confirmacion = anotarDevolucion(libro);
+            }
+        } finally {
+            lectura.unlock();
+        }
+        try {
+            DiarioOperaciones.esperar(confirmacion);
+        } finally {
+            metricas.registrar(Metricas.Operacion.DEVOLVER, inicio);
+        }
+    }
+
+    /**
+     * Aplica un lote de préstamos y devoluciones de forma atómica: o todas o ninguna.
+     *
+     * Todo ocurre con un solo candado de escritura (que excluye los préstamos sueltos, así el
+     * estado validado no cambia antes de aplicarlo): cada ISBN se resuelve con una consulta al
+     * índice hash y el lote se valida completo sobre un estado simulado, de modo que prestar
+     * y luego devolver el mismo libro dentro del lote es válido. Si alguna operación falla no
+     * se aplica ninguna y el resultado informa el motivo de cada una, sin excepción. Si todas
+     * son válidas se aplican y el diario se espera una sola vez para el lote entero.
+     *
+     * Los registros del lote se encolan en el diario todos o ninguno; si el diario los rechaza
+     * (cerrado o fallado) los libros vuelven a su estado anterior y la excepción se propaga.
+     */
+    public ResultadoLote procesarLote(List<Operacion> operaciones) {
+        if (operaciones == null) throw new IllegalArgumentException("Lote nulo");
+        List<Operacion> lote = new ArrayList<>(operaciones);
+        String[] errores = new String[lote.size()];
+        boolean[] aplicado = { false };
+        Duration plazo = plazoPrestamo;
+        escribir(Metricas.Operacion.PROCESAR_LOTE, () -> {
+            Libro[] libros = validarLote(lote, errores);
+            if (libros == null) return null;
+            String[] anteriores = new String[lote.size()];
+            int aplicadas = 0;
+            try {
+                for (; aplicadas < lote.size(); aplicadas++) {
+                    Libro libro = libros[aplicadas];
+                    synchronized (libro) {
+                        anteriores[aplicadas] = libro.getPrestatario();
+                        if (lote.get(aplicadas).getTipo() == Operacion.Tipo.PRESTAR) {
+                            libro.prestar(lote.get(aplicadas).getPrestatario());
+                            prestados.add(libro);
+                        } else {
+                            libro.devolver();
+                            prestados.remove(libro);
+                        }
+                    }
+                }
+                CompletableFuture<Void> confirmacion = anotarLote(lote, libros, plazo);
+                aplicado[0] = true;
+                return confirmacion;
+            } catch (RuntimeException ex) {
+                deshacer(lote, libros, anteriores, aplicadas);
+                throw ex;
+            }
+        });
+        return new ResultadoLote(lote, errores, aplicado[0]);
+    }
+
+    /**
+     * Anota un lote ya aplicado a los libros: con el monitor del historial (como
+     * {@link #anotarPrestamo}) encola todos sus registros en el diario de una vez y recién
+     * entonces actualiza el historial, así un rechazo del diario no deja nada anotado.
+     */
+    private CompletableFuture<Void> anotarLote(List<Operacion> lote, Libro[] libros, Duration plazo) {
+        long ahora = System.currentTimeMillis();
+        long vence = ahora + plazo.toMillis();
+        List<DiarioOperaciones.Cambio> cambios = new ArrayList<>(lote.size());
+        for (int i = 0; i < lote.size(); i++) {
+            Operacion operacion = lote.get(i);
+            cambios.add(operacion.getTipo() == Operacion.Tipo.PRESTAR
+                    ? DiarioOperaciones.cambioPrestar(libros[i].getIsbn(), operacion.getPrestatario().trim(), vence)
+                    : DiarioOperaciones.cambioDevolver(libros[i].getIsbn()));
+        }
+        synchronized (historial) {
+            CompletableFuture<Void> confirmacion = anotar(d -> d.encolarTodos(cambios));
+            if (!historialPausado) {
+                for (int i = 0; i < lote.size(); i++) {
+                    Operacion operacion = lote.get(i);
+                    if (operacion.getTipo() == Operacion.Tipo.PRESTAR) {
+                        historial.prestar(libros[i].getIsbn(), operacion.getPrestatario().trim(), ahora, vence);
+                    } else {
+                        historial.devolver(libros[i].getIsbn(), ahora);
+                    }
+                }
+            }
+            return confirmacion;
+        }
+    }
+
+    /** Revierte, de la última a la primera, las primeras {@code aplicadas} operaciones del lote. */
+    private void deshacer(List<Operacion> lote, Libro[] libros, String[] anteriores, int aplicadas) {
+        for (int i = aplicadas - 1; i >= 0; i--) {
+            Libro libro = libros[i];
+            synchronized (libro) {
+                if (lote.get(i).getTipo() == Operacion.Tipo.PRESTAR) {
+                    libro.devolver();
+                    prestados.remove(libro);
+                } else {
+                    libro.prestar(anteriores[i]);
+                    prestados.add(libro);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resuelve y valida cada operación sobre la disponibilidad simulada de sus libros.
+     * @return los libros de cada operación, o null si alguna es inválida (ver errores).
+     */
+    private Libro[] validarLote(List<Operacion> lote, String[] errores) {
+        Libro[] libros = new Libro[lote.size()];
+        Map<Libro, Boolean> disponibles = new IdentityHashMap<>();
+        boolean valido = true;
+        for (int i = 0; i < lote.size(); i++) {
+            Operacion operacion = lote.get(i);
+            Libro libro = operacion == null ? null : arbol.buscarPorIsbn(operacion.getIsbn());
+            if (operacion == null) {
+                errores[i] = "Operación nula";
+            } else if (libro == null) {
+                errores[i] = "ISBN no encontrado: " + operacion.getIsbn();
+            } else {
+                boolean disponible = disponibles.computeIfAbsent(libro, Libro::isDisponible);
+                if (operacion.getTipo() == Operacion.Tipo.PRESTAR) {
+                    String prestatario = operacion.getPrestatario();
+                    if (!disponible) errores[i] = "El libro ya está prestado: " + libro.getIsbn();
+                    else if (prestatario == null || prestatario.trim().isEmpty()) errores[i] = "Nombre de prestatario inválido";
+                } else if (disponible) {
+                    errores[i] = "El libro ya está disponible (no estaba prestado): " + libro.getIsbn();
+                }
+            }
+            if (errores[i] != null) {
+                valido = false;
+                continue;
+            }
+            libros[i] = libro;
+            disponibles.put(libro, operacion.getTipo() == Operacion.Tipo.DEVOLVER);
+        }
+        return valido ? libros : null;
+    }
+
+    /** Plazo de los préstamos que no indican uno (14 días al crear el servicio). */
+    public Duration getPlazoPrestamo() {
+        return plazoPrestamo;
+    }
+
+    public void setPlazoPrestamo(Duration plazo) {
+        validarPlazo(plazo);
+        this.plazoPrestamo = plazo;
+    }
+
+    private static void validarPlazo(Duration plazo) {
+        if (plazo == null || plazo.isNegative() || plazo.isZero() || plazo.compareTo(PLAZO_MAXIMO) > 0) {
+            throw new IllegalArgumentException("Plazo de préstamo inválido: " + plazo);
+        }
+    }
+
+    /** Préstamo activo del libro (con su vencimiento), o null si está disponible. */
+    public Prestamo prestamoActivo(String isbn) {
+        return isbn == null ? null : historial.activo(isbn.trim());
+    }
+
+    /**
+     * Libros que tiene el prestatario, del vencimiento más próximo al más lejano.
+     * Coste O(k) en sus préstamos activos.
+     */
+    public List<Prestamo> prestamosDe(String prestatario) {
+        if (prestatario == null) return Collections.emptyList();
+        return historial.activosDe(prestatario.trim());
+    }
+
+    /** Hasta {@code limite} préstamos del prestatario, devueltos o no, del más reciente al más antiguo. */
+    public List<Prestamo> historialPrestatario(String prestatario, int limite) {
+        if (prestatario == null) return Collections.emptyList();
+        return historial.historialDe(prestatario.trim(), limite);
+    }
+
+    /** Quién tuvo el libro: hasta {@code limite} préstamos, del más reciente al más antiguo. */
+    public List<Prestamo> historialLibro(String isbn, int limite) {
+        if (isbn == null) return Collections.emptyList();
+        return historial.historialLibro(isbn.trim(), limite);
+    }
+
+    public List<Prestamo> prestamosVencidos() {
+        return prestamosVencidos(Instant.now());
+    }
+
+    /**
+     * Préstamos sin devolver cuyo vencimiento ya pasó en {@code fecha}, del más atrasado al
+     * menos; solo recorre la parte vencida del montículo de vencimientos.
+     */
+    public List<Prestamo> prestamosVencidos(Instant fecha) {
+        return historial.vencidos(fecha.toEpochMilli());
+    }
+
+    /** Préstamos registrados en el historial, devueltos o no. */
+    public long totalPrestamosHistoricos() {
+        return historial.cantidad();
+    }
+
+    /**
+     * Libros que cumplen el criterio. Con {@code paralelo} el recorrido se reparte por
+     * subárboles entre los hilos del ForkJoinPool; con {@code ordenado} el resultado sale
+     * en orden alfabético (si no importa el orden, pedirlo desordenado evita reagrupar).
+     * El criterio se evalúa con el candado de lectura tomado: no debe modificar el catálogo.
+     */
+    public List<Libro> filtrar(Predicate<Libro> criterio, boolean paralelo, boolean ordenado) {
+        return leer(Metricas.Operacion.LISTAR, () -> {
+            Stream<Libro> libros = arbol.stream(paralelo);
+            if (!ordenado) libros = libros.unordered();
+            return libros.filter(criterio).collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * Libros que cumplen todos los criterios de la consulta (año, categoría, editorial,
+     * disponibilidad). El recorrido parte del índice más selectivo.
+     */
+    public List<Libro> consultar(Consulta consulta) {
+        return leer(Metricas.Operacion.CONSULTAR, () -> arbol.consultar(consulta).collect(Collectors.toList()));
+    }
+
+    /**
+     * Entrega cada libro de la consulta a {@code accion} sin armar la lista de resultados.
+     * La acción corre con el candado de lectura tomado: no debe modificar el catálogo.
+     */
+    public void consultar(Consulta consulta, Consumer<? super Libro> accion) {
+        leer(Metricas.Operacion.CONSULTAR, () -> {
+            arbol.consultar(consulta).forEach(accion);
+            return null;
+        });
+    }
+
+    public long contar(Consulta consulta) {
+        return leer(Metricas.Operacion.CONSULTAR, () -> arbol.consultar(consulta).count());
+    }
+
+    /** Índice que usaría la consulta ("año", "categoría", "editorial" o "completo"). */
+    public String planConsulta(Consulta consulta) {
+        return leer(() -> arbol.planConsulta(consulta));
     }
 
     public List<Libro> listarDisponibles() {
-        return arbol.listarDisponibles();
+        return leer(Metricas.Operacion.LISTAR, arbol::listarDisponibles);
     }
 
+    /**
+     * Libros prestados (sin orden particular). Coste O(préstamos activos).
+     */
     public List<Libro> listarPrestados() {
-        return arbol.listarPrestados();
+        return new ArrayList<>(prestados);
     }
 
     public List<Libro> buscarPorCategoria(String categoria) {
-        return arbol.buscarPorCategoria(categoria);
+        if (categoria == null) return Collections.emptyList();
+        return leer(Metricas.Operacion.BUSCAR_CATEGORIA, () -> cache.obtener(POR_CATEGORIA + ArbolBST.claveCategoria(categoria),
+                clave -> Collections.unmodifiableList(arbol.buscarPorCategoria(categoria))));
+    }
+
+    /**
+     * Búsqueda por palabras del título (todas deben aparecer); ver {@link ArbolBST#buscarPorTitulo}.
+     */
+    public List<Libro> buscarPorTitulo(String consulta) {
+        List<Libro> libros = leer(Metricas.Operacion.BUSCAR_TITULO, () -> arbol.buscarPorTitulo(consulta));
+        metricas.busquedaTitulo(!libros.isEmpty());
+        return libros;
+    }
+
+    /**
+     * Libros del autor sin distinguir tildes ni mayúsculas ("cortazar" encuentra "Cortázar").
+     */
+    public List<Libro> buscarPorAutorSinTildes(String autor) {
+        return leer(Metricas.Operacion.BUSCAR_AUTOR, () -> arbol.buscarPorAutorSinTildes(autor));
+    }
+
+    /**
+     * Sugerencias para el buscador: autores cuyo apellido empieza por el prefijo.
+     */
+    public List<String> autocompletarAutor(String prefijo, int limite) {
+        return leer(() -> arbol.autocompletarAutor(prefijo, limite));
+    }
+
+    /**
+     * Autores parecidos al buscado (tolerando errores de tipeo), del más al menos parecido.
+     * La distancia admitida crece con el largo del apellido: ninguna hasta 2 letras, una
+     * hasta 5 y dos a partir de 6, para que los apellidos cortos no traigan ruido.
+     */
+    public List<String> buscarAutorAproximado(String autor) {
+        if (autor == null || autor.trim().isEmpty()) return Collections.emptyList();
+        int largo = ArbolBST.claveAutor(autor).length();
+        return buscarAutorAproximado(autor, largo <= 2 ? 0 : largo <= 5 ? 1 : 2);
+    }
+
+    public List<String> buscarAutorAproximado(String autor, int maxDistancia) {
+        return leer(() -> arbol.buscarAutorAproximado(autor, maxDistancia));
+    }
+
+    /** Quita de la caché las consultas cuyo resultado incluye (o incluiría) el libro. */
+    private void invalidar(Libro libro) {
+        cache.invalidar(POR_AUTOR + ArbolBST.claveAutor(libro.getAutor()));
+        // sin categoría no hay consulta por categoría que lo incluya
+        if (libro.getCategoria() != null) cache.invalidar(POR_CATEGORIA + ArbolBST.claveCategoria(libro.getCategoria()));
+    }
+
+    public CacheConsultas.Estadisticas estadisticasCache() {
+        return cache.estadisticas();
+    }
+
+    public int contarPorCategoria(String categoria) {
+        return leer(() -> arbol.contarPorCategoria(categoria));
+    }
+
+    public Map<String, Integer> conteoPorCategoria() {
+        return leer(arbol::conteoPorCategoria);
     }
 
     /* Estadísticas */
     public int totalLibros() {
-        return arbol.contarNodos();
+        return leer(arbol::contarLibros);
+    }
+
+    public int totalAutores() {
+        return leer(arbol::contarNodos);
     }
 
     public int alturaArbol() {
-        return arbol.altura();
+        return leer(arbol::altura);
+    }
+
+    /**
+     * Posición alfabética (desde 0) del apellido del autor entre todos los apellidos.
+     */
+    public int posicionAutor(String autor) {
+        return leer(() -> arbol.posicionAutor(autor));
+    }
+
+    /**
+     * Libros del autor en la posición alfabética indicada (desde 0), para paginar el catálogo.
+     */
+    public List<Libro> autorEnPosicion(int posicion) {
+        return leer(() -> arbol.autorEnPosicion(posicion));
     }
 
     public Libro primerAutor() {
-        return arbol.encontrarMinimo();
+        return leer(arbol::encontrarMinimo);
     }
 
     public Libro ultimoAutor() {
-        return arbol.encontrarMaximo();
+        return leer(arbol::encontrarMaximo);
     }
 
     public long totalDisponibles() {
-        return listarDisponibles().size();
+        return leer(() -> arbol.contarLibros() - prestados.size());
     }
 
     public long totalPrestados() {
-        return listarPrestados().size();
+        return prestados.size();
     }
 }
@@ -0,0 +1,250 @@
+package servicio;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Caché acotada de resultados de consultas con política de desalojo configurable:
+ * LRU (el menos usado recientemente) o LFU (el menos usado en total; a igual frecuencia,
+ * el más antiguo). Ambas operan en O(1) por acceso.
+ *
+ * Los métodos son sincronizados, salvo el cálculo de un fallo, que corre fuera del monitor
+ * para que las consultas que no aciertan no se serialicen entre sí. El servicio consulta y
+ * llena la caché con el candado de lectura tomado e invalida con el de escritura, así un
+ * resultado calculado antes de un cambio nunca se guarda después de su invalidación.
+ */
+public final class CacheConsultas<K, V> {
+
+    public enum Politica {
+        LRU, LFU
+    }
+
+    /** Contadores de la caché en un instante, para dimensionarla. */
+    public static final class Estadisticas {
+        public final long aciertos;
+        public final long fallos;
+        public final long desalojos;
+        public final long invalidaciones;
+        public final int tamanio;
+        public final int capacidad;
+
+        Estadisticas(long aciertos, long fallos, long desalojos, long invalidaciones, int tamanio, int capacidad) {
+            this.aciertos = aciertos;
+            this.fallos = fallos;
+            this.desalojos = desalojos;
+            this.invalidaciones = invalidaciones;
+            this.tamanio = tamanio;
+            this.capacidad = capacidad;
+        }
+
+        public double tasaAciertos() {
+            long consultas = aciertos + fallos;
+            return consultas == 0 ? 0 : (double) aciertos / consultas;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("aciertos: %d | fallos: %d | tasa: %.1f%% | desalojos: %d | invalidaciones: %d | ocupación: %d/%d",
+                    aciertos, fallos, tasaAciertos() * 100, desalojos, invalidaciones, tamanio, capacidad);
+        }
+    }
+
+    private final Politica politica;
+    private final int capacidad;
+    private final Almacen<K, V> almacen;
+    private long aciertos;
+    private long fallos;
+    private long desalojos;
+    private long invalidaciones;
+
+    /**
+     * @param capacidad número máximo de resultados guardados; 0 desactiva la caché.
+     */
+    public CacheConsultas(Politica politica, int capacidad) {
+        if (politica == null) throw new IllegalArgumentException("Política de caché nula");
+        if (capacidad < 0) throw new IllegalArgumentException("Capacidad de caché inválida: " + capacidad);
+        this.politica = politica;
+        this.capacidad = capacidad;
+        this.almacen = politica == Politica.LRU ? new AlmacenLru<>() : new AlmacenLfu<>();
+    }
+
+    public Politica getPolitica() {
+        return politica;
+    }
+
+    /**
+     * Devuelve el resultado guardado para la clave o lo calcula, lo guarda y lo devuelve.
+     * Dos fallos simultáneos de la misma clave la calculan ambos; se publica el primero.
+     */
+    V obtener(K clave, Function<K, V> calcular) {
+        synchronized (this) {
+            V valor = almacen.obtener(clave);
+            if (valor != null) {
+                aciertos++;
+                return valor;
+            }
+            fallos++;
+        }
+        V valor = calcular.apply(clave);
+        if (capacidad == 0 || valor == null) return valor;
+        synchronized (this) {
+            V publicado = almacen.obtener(clave);
+            if (publicado != null) return publicado;
+            if (almacen.tamanio() == capacidad) {
+                almacen.desalojar();
+                desalojos++;
+            }
+            almacen.guardar(clave, valor);
+        }
+        return valor;
+    }
+
+    synchronized void invalidar(K clave) {
+        if (almacen.quitar(clave)) invalidaciones++;
+    }
+
+    synchronized void limpiar() {
+        invalidaciones += almacen.tamanio();
+        almacen.limpiar();
+    }
+
+    public synchronized Estadisticas estadisticas() {
+        return new Estadisticas(aciertos, fallos, desalojos, invalidaciones, almacen.tamanio(), capacidad);
+    }
+
+    /** Estructura de almacenamiento según la política; la sincronización la pone CacheConsultas. */
+    private interface Almacen<K, V> {
+        V obtener(K clave);
+
+        void guardar(K clave, V valor);
+
+        void desalojar();
+
+        boolean quitar(K clave);
+
+        int tamanio();
+
+        void limpiar();
+    }
+
+    /** LRU: LinkedHashMap en orden de acceso; el primero es el menos usado recientemente. */
+    private static final class AlmacenLru<K, V> implements Almacen<K, V> {
+        private final LinkedHashMap<K, V> entradas = new LinkedHashMap<>(16, 0.75f, true);
+
+        @Override
+        public V obtener(K clave) {
+            return entradas.get(clave);
+        }
+
+        @Override
+        public void guardar(K clave, V valor) {
+            entradas.put(clave, valor);
+        }
+
+        @Override
+        public void desalojar() {
+            Iterator<K> claves = entradas.keySet().iterator();
+            claves.next();
+            claves.remove();
+        }
+
+        @Override
+        public boolean quitar(K clave) {
+            return entradas.remove(clave) != null;
+        }
+
+        @Override
+        public int tamanio() {
+            return entradas.size();
+        }
+
+        @Override
+        public void limpiar() {
+            entradas.clear();
+        }
+    }
+
+    /**
+     * LFU en O(1): cada entrada conoce su frecuencia y las claves se agrupan en cubetas por
+     * frecuencia (en orden de llegada). Se desaloja la más antigua de la cubeta mínima.
+     */
+    private static final class AlmacenLfu<K, V> implements Almacen<K, V> {
+        private static final class Entrada<V> {
+            V valor;
+            int frecuencia;
+
+            Entrada(V valor) {
+                this.valor = valor;
+                this.frecuencia = 1;
+            }
+        }
+
+        private final Map<K, Entrada<V>> entradas = new HashMap<>();
+        private final Map<Integer, LinkedHashSet<K>> cubetas = new HashMap<>();
+        private int frecuenciaMinima;
+
+        @Override
+        public V obtener(K clave) {
+            Entrada<V> entrada = entradas.get(clave);
+            if (entrada == null) return null;
+            LinkedHashSet<K> cubeta = cubetas.get(entrada.frecuencia);
+            cubeta.remove(clave);
+            if (cubeta.isEmpty()) {
+                cubetas.remove(entrada.frecuencia);
+                if (frecuenciaMinima == entrada.frecuencia) frecuenciaMinima++;
+            }
+            entrada.frecuencia++;
+            cubetas.computeIfAbsent(entrada.frecuencia, f -> new LinkedHashSet<>()).add(clave);
+            return entrada.valor;
+        }
+
+        @Override
+        public void guardar(K clave, V valor) {
+            entradas.put(clave, new Entrada<>(valor));
+            cubetas.computeIfAbsent(1, f -> new LinkedHashSet<>()).add(clave);
+            frecuenciaMinima = 1;
+        }
+
+        @Override
+        public void desalojar() {
+            LinkedHashSet<K> cubeta = cubetas.get(frecuenciaMinima);
+            Iterator<K> claves = cubeta.iterator();
+            K victima = claves.next();
+            claves.remove();
+            if (cubeta.isEmpty()) cubetas.remove(frecuenciaMinima);
+            entradas.remove(victima);
+        }
+
+        @Override
+        public boolean quitar(K clave) {
+            Entrada<V> entrada = entradas.remove(clave);
+            if (entrada == null) return false;
+            LinkedHashSet<K> cubeta = cubetas.get(entrada.frecuencia);
+            cubeta.remove(clave);
+            if (cubeta.isEmpty()) {
+                cubetas.remove(entrada.frecuencia);
+                // la mínima solo se recalcula si se vació su cubeta (quitar es poco frecuente)
+                if (frecuenciaMinima == entrada.frecuencia) {
+                    frecuenciaMinima = cubetas.isEmpty() ? 0 : cubetas.keySet().stream().min(Integer::compare).get();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int tamanio() {
+            return entradas.size();
+        }
+
+        @Override
+        public void limpiar() {
+            entradas.clear();
+            cubetas.clear();
+            frecuenciaMinima = 0;
+        }
+    }
+}
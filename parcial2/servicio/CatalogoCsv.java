@@ -0,0 +1,425 @@
+package servicio;
+
+import estructura.Instantanea;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import modelo.Libro;
+
+/**
+ * Importación y exportación del catálogo en CSV (RFC 4180, UTF-8) por canales NIO.
+ *
+ * Columnas: isbn, titulo, autor, editorial, anio, categoria, prestatario. La editorial
+ * y el prestatario vacíos significan "sin dato" y "disponible". La primera fila se omite
+ * si es el encabezado.
+ *
+ * Importar es una tubería de dos etapas: un hilo lee el archivo en bloques, decodifica y
+ * arma lotes de libros; el hilo que llama los registra con
+ * {@link BibliotecaService#registrarLote}, un candado de escritura y una espera del diario
+ * por lote. Entre ambos hay una cola acotada: si el registro va más lento que la lectura,
+ * el lector se bloquea (contrapresión). La memoria usada depende del tamaño de bloque, de
+ * lote y de la cola, no del archivo.
+ *
+ * Exportar recorre una instantánea en orden alfabético sin candados y codifica cada fila
+ * sobre los mismos búferes de caracteres y bytes.
+ */
+public final class CatalogoCsv {
+    static final int TAMANIO_LOTE = 1024;
+    static final int LOTES_EN_COLA = 4;
+    private static final int TAMANIO_BLOQUE = 1 << 16;
+    private static final int MAX_ERRORES = 100;
+    private static final String ENCABEZADO = "isbn,titulo,autor,editorial,anio,categoria,prestatario";
+
+    /** Resultado de una importación; guarda solo los primeros errores para no crecer con el archivo. */
+    public static final class ResultadoImportacion {
+        private long leidos;
+        private long registrados;
+        private long rechazados;
+        private final List<String> errores = new ArrayList<>();
+
+        public long getLeidos() {
+            return leidos;
+        }
+
+        public long getRegistrados() {
+            return registrados;
+        }
+
+        public long getRechazados() {
+            return rechazados;
+        }
+
+        /** Hasta 100 mensajes "línea N: motivo", en orden de aparición. */
+        public List<String> getErrores() {
+            return Collections.unmodifiableList(errores);
+        }
+
+        private void rechazar(long linea, String motivo) {
+            rechazados++;
+            if (errores.size() < MAX_ERRORES) errores.add("línea " + linea + ": " + motivo);
+        }
+
+        @Override
+        public String toString() {
+            return "leídos=" + leidos + ", registrados=" + registrados + ", rechazados=" + rechazados;
+        }
+    }
+
+    /** Libros leídos juntos y la línea donde empieza cada uno. */
+    private static final class Lote {
+        static final Lote FIN = new Lote();
+
+        final List<Libro> libros = new ArrayList<>(TAMANIO_LOTE);
+        long[] lineas = new long[TAMANIO_LOTE];
+        /** Filas inválidas del lote: línea y motivo, para informarlas en orden. */
+        final List<String> invalidas = new ArrayList<>();
+        final List<Long> lineasInvalidas = new ArrayList<>();
+
+        void agregar(Libro libro, long linea) {
+            if (libros.size() == lineas.length) lineas = Arrays.copyOf(lineas, lineas.length * 2);
+            lineas[libros.size()] = linea;
+            libros.add(libro);
+        }
+
+        boolean vacio() {
+            return libros.isEmpty() && invalidas.isEmpty();
+        }
+    }
+
+    private CatalogoCsv() {
+    }
+
+    /**
+     * Importa el archivo sobre el servicio. Las filas mal formadas o con ISBN repetido se
+     * rechazan y la importación sigue.
+     * @throws IOException si el archivo no se puede leer o no es UTF-8 válido.
+     */
+    public static ResultadoImportacion importar(Path archivo, BibliotecaService servicio) throws IOException {
+        BlockingQueue<Lote> cola = new ArrayBlockingQueue<>(LOTES_EN_COLA);
+        Lector lector = new Lector(archivo, cola);
+        Thread hilo = new Thread(lector, "importador-csv");
+        hilo.setDaemon(true);
+        hilo.start();
+
+        ResultadoImportacion resultado = new ResultadoImportacion();
+        boolean completo = false;
+        try {
+            for (Lote lote = tomar(cola); lote != Lote.FIN; lote = tomar(cola)) {
+                registrar(lote, servicio, resultado);
+            }
+            completo = true;
+        } finally {
+            if (!completo) {
+                hilo.interrupt();
+                cola.clear();
+            }
+        }
+        if (lector.error != null) throw lector.error;
+        return resultado;
+    }
+
+    private static Lote tomar(BlockingQueue<Lote> cola) throws InterruptedIOException {
+        try {
+            return cola.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Importación interrumpida");
+        }
+    }
+
+    private static void registrar(Lote lote, BibliotecaService servicio, ResultadoImportacion resultado) {
+        resultado.leidos += lote.libros.size() + lote.invalidas.size();
+        Set<Libro> rechazados = Collections.newSetFromMap(new IdentityHashMap<>());
+        rechazados.addAll(servicio.registrarLote(lote.libros));
+        // las filas inválidas y los duplicados se informan en el orden del archivo
+        int invalida = 0;
+        for (int i = 0; i < lote.libros.size(); i++) {
+            while (invalida < lote.invalidas.size() && lote.lineasInvalidas.get(invalida) < lote.lineas[i]) {
+                resultado.rechazar(lote.lineasInvalidas.get(invalida), lote.invalidas.get(invalida));
+                invalida++;
+            }
+            Libro libro = lote.libros.get(i);
+            if (rechazados.contains(libro)) resultado.rechazar(lote.lineas[i], "ISBN duplicado: " + libro.getIsbn());
+            else resultado.registrados++;
+        }
+        for (; invalida < lote.invalidas.size(); invalida++) {
+            resultado.rechazar(lote.lineasInvalidas.get(invalida), lote.invalidas.get(invalida));
+        }
+    }
+
+    /**
+     * Etapa de lectura: canal -> bytes -> caracteres -> filas -> libros, sin leer el archivo
+     * entero ni armar líneas completas (un campo entre comillas puede cruzar bloques).
+     */
+    private static final class Lector implements Runnable {
+        private final Path archivo;
+        private final BlockingQueue<Lote> cola;
+        private volatile IOException error;
+
+        private final StringBuilder campo = new StringBuilder();
+        private final List<String> fila = new ArrayList<>();
+        private boolean entreComillas;
+        /** Se acaba de cerrar una comilla: otra comilla es un escape, cualquier otra cosa la cierra. */
+        private boolean comillaPendiente;
+        private boolean filaIniciada;
+        private boolean primeraFila = true;
+        private long linea = 1;
+        private long lineaFila = 1;
+        private Lote lote = new Lote();
+
+        Lector(Path archivo, BlockingQueue<Lote> cola) {
+            this.archivo = archivo;
+            this.cola = cola;
+        }
+
+        @Override
+        public void run() {
+            try {
+                leer();
+                if (!lote.vacio()) cola.put(lote);
+            } catch (IOException ex) {
+                error = ex;
+            } catch (InterruptedException ex) {
+                return; // el consumidor abandonó la importación
+            }
+            try {
+                cola.put(Lote.FIN);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void leer() throws IOException, InterruptedException {
+            CharsetDecoder decodificador = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            ByteBuffer bytes = ByteBuffer.allocateDirect(TAMANIO_BLOQUE);
+            CharBuffer caracteres = CharBuffer.allocate(TAMANIO_BLOQUE);
+            try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+                boolean fin = false;
+                while (!fin) {
+                    fin = canal.read(bytes) < 0;
+                    bytes.flip();
+                    CoderResult estado;
+                    do {
+                        estado = decodificador.decode(bytes, caracteres, fin);
+                        if (estado.isError()) throw new IOException("UTF-8 inválido cerca de la línea " + linea);
+                        procesar(caracteres);
+                    } while (estado.isOverflow());
+                    bytes.compact();
+                }
+                decodificador.flush(caracteres);
+                procesar(caracteres);
+                if (filaIniciada || campo.length() > 0 || !fila.isEmpty()) terminarFila();
+            }
+        }
+
+        private void procesar(CharBuffer caracteres) throws InterruptedException {
+            caracteres.flip();
+            while (caracteres.hasRemaining()) procesar(caracteres.get());
+            caracteres.clear();
+        }
+
+        private void procesar(char c) throws InterruptedException {
+            if (c == '\n') linea++;
+            if (entreComillas) {
+                if (comillaPendiente) {
+                    comillaPendiente = false;
+                    if (c == '"') {
+                        campo.append('"');
+                        return;
+                    }
+                    entreComillas = false;
+                } else {
+                    if (c == '"') comillaPendiente = true;
+                    else campo.append(c);
+                    return;
+                }
+            }
+            if (c == '\uFEFF' && linea == 1 && !filaIniciada) return; // marca de orden de bytes
+            switch (c) {
+                case '"':
+                    entreComillas = true;
+                    filaIniciada = true;
+                    break;
+                case ',':
+                    fila.add(campo.toString());
+                    campo.setLength(0);
+                    filaIniciada = true;
+                    break;
+                case '\r':
+                    break; // fuera de comillas los saltos CRLF valen como LF
+                case '\n':
+                    if (filaIniciada || campo.length() > 0) terminarFila();
+                    lineaFila = linea;
+                    break;
+                default:
+                    campo.append(c);
+                    filaIniciada = true;
+            }
+        }
+
+        private void terminarFila() throws InterruptedException {
+            fila.add(campo.toString());
+            campo.setLength(0);
+            filaIniciada = false;
+            entreComillas = false;
+            comillaPendiente = false;
+            boolean encabezado = primeraFila && fila.get(0).trim().equalsIgnoreCase("isbn");
+            primeraFila = false;
+            if (!encabezado) convertir();
+            fila.clear();
+        }
+
+        private void convertir() throws InterruptedException {
+            try {
+                lote.agregar(aLibro(fila), lineaFila);
+            } catch (IllegalArgumentException | IllegalStateException ex) {
+                lote.invalidas.add(ex.getMessage());
+                lote.lineasInvalidas.add(lineaFila);
+            }
+            if (lote.libros.size() + lote.invalidas.size() >= TAMANIO_LOTE) {
+                cola.put(lote);
+                lote = new Lote();
+            }
+        }
+    }
+
+    /**
+     * Convierte una fila ya separada en un Libro, prestado si trae prestatario. Los valores
+     * se conservan tal cual (los espacios son parte del campo), así exportar e importar
+     * reproduce el catálogo; solo ISBN, título y autor son obligatorios, y una editorial o
+     * categoría vacía se lee como null, que es como se exporta.
+     * @throws IllegalArgumentException si faltan columnas o algún dato es inválido.
+     */
+    static Libro aLibro(List<String> fila) {
+        if (fila.size() < 6 || fila.size() > 7) {
+            throw new IllegalArgumentException("se esperaban 6 o 7 columnas y hay " + fila.size());
+        }
+        String isbn = requerido(fila.get(0), "ISBN");
+        String titulo = requerido(fila.get(1), "título");
+        String autor = requerido(fila.get(2), "autor");
+        String editorial = fila.get(3).trim().isEmpty() ? null : fila.get(3);
+        int anio;
+        try {
+            anio = Integer.parseInt(fila.get(4).trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("año inválido: " + fila.get(4));
+        }
+        String categoria = fila.get(5).trim().isEmpty() ? null : fila.get(5);
+        Libro libro = new Libro(isbn, titulo, autor, editorial, anio, categoria);
+        if (fila.size() == 7 && !fila.get(6).trim().isEmpty()) libro.prestar(fila.get(6));
+        return libro;
+    }
+
+    private static String requerido(String valor, String nombre) {
+        if (valor.trim().isEmpty()) throw new IllegalArgumentException(nombre + " vacío");
+        return valor;
+    }
+
+    /**
+     * Escribe la instantánea en orden alfabético de autor. El archivo se reemplaza.
+     * @return cantidad de libros escritos.
+     */
+    public static long exportar(Instantanea instantanea, Path archivo) throws IOException {
+        Codificador codificador = new Codificador();
+        long escritos = 0;
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            codificador.canal = canal;
+            codificador.fila.append(ENCABEZADO).append('\n');
+            codificador.volcarFila();
+            for (Iterator<Libro> libros = instantanea.stream(false).iterator(); libros.hasNext(); ) {
+                codificador.escribir(libros.next());
+                escritos++;
+            }
+            codificador.terminar();
+            canal.force(false);
+        }
+        return escritos;
+    }
+
+    /** Búferes reutilizados para todas las filas de una exportación. */
+    private static final class Codificador {
+        private final StringBuilder fila = new StringBuilder(256);
+        private final CharsetEncoder codificador = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(TAMANIO_BLOQUE);
+        private FileChannel canal;
+
+        void escribir(Libro libro) throws IOException {
+            String prestatario;
+            synchronized (libro) {
+                prestatario = libro.getPrestatario();
+            }
+            campo(libro.getIsbn()).append(',');
+            campo(libro.getTitulo()).append(',');
+            campo(libro.getAutor()).append(',');
+            campo(libro.getEditorial()).append(',');
+            fila.append(libro.getAnioPublicacion()).append(',');
+            campo(libro.getCategoria()).append(',');
+            campo(prestatario).append('\n');
+            volcarFila();
+        }
+
+        /** Agrega el valor entre comillas solo si contiene separadores, comillas o saltos. */
+        private StringBuilder campo(String valor) {
+            if (valor == null) return fila;
+            boolean comillas = false;
+            for (int i = 0; i < valor.length() && !comillas; i++) {
+                char c = valor.charAt(i);
+                comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!comillas) return fila.append(valor);
+            fila.append('"');
+            for (int i = 0; i < valor.length(); i++) {
+                char c = valor.charAt(i);
+                if (c == '"') fila.append('"');
+                fila.append(c);
+            }
+            return fila.append('"');
+        }
+
+        void volcarFila() throws IOException {
+            CharBuffer caracteres = CharBuffer.wrap(fila);
+            while (true) {
+                CoderResult estado = codificador.encode(caracteres, bytes, false);
+                if (!estado.isOverflow()) break;
+                vaciar();
+            }
+            fila.setLength(0);
+        }
+
+        void terminar() throws IOException {
+            CharBuffer vacio = CharBuffer.allocate(0);
+            while (codificador.encode(vacio, bytes, true).isOverflow()) vaciar();
+            while (codificador.flush(bytes).isOverflow()) vaciar();
+            vaciar();
+        }
+
+        void vaciar() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) canal.write(bytes);
+            bytes.clear();
+        }
+    }
+}
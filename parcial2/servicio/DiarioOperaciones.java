@@ -0,0 +1,546 @@
+package servicio;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import modelo.Libro;
+
+/**
+ * Registro de escritura anticipada (WAL) del catálogo: cada operación se agrega al final
+ * de un segmento {@code diario-<primera secuencia>.wal} con su número de secuencia y su
+ * marca de tiempo.
+ *
+ * Confirmación en grupo: quien registra una operación solo encola el registro y espera;
+ * un único hilo escritor toma todo lo encolado, lo escribe y hace un solo {@code force()}
+ * por lote, así muchas operaciones concurrentes comparten el coste del fsync.
+ *
+ * Formato de cada registro: [int longitud][int crc32][byte tipo][long secuencia]
+ * [long marca de tiempo][campos]. Un registro incompleto o con CRC inválido (escritura
+ * cortada por una caída) marca el final útil del segmento; al reproducir, el segmento se
+ * trunca ahí para que lo que se agregue después no quede detrás de basura. El préstamo
+ * termina con su vencimiento en milisegundos. Los textos no tienen límite de largo (ver
+ * {@link #escribirTexto}).
+ */
+final class DiarioOperaciones implements Closeable {
+    static final byte REGISTRAR = 1;
+    static final byte ELIMINAR_AUTOR = 2;
+    static final byte ELIMINAR_LIBRO = 3;
+    static final byte PRESTAR = 4;
+    static final byte DEVOLVER = 5;
+
+    private static final String PREFIJO = "diario-";
+    /* marca de cada texto */
+    private static final byte NULO = 0;
+    private static final byte CORTO = 1;
+    private static final byte LARGO = 2;
+    /** Caracteres por trozo de writeUTF: a 3 bytes por carácter como máximo caben en sus 64 KB. */
+    private static final int TROZO = 16_384;
+    private static final String EXTENSION = ".wal";
+
+    /** Operación leída del diario durante la recuperación. */
+    static final class Registro {
+        final byte tipo;
+        final long secuencia;
+        final long marcaTiempo;
+        final Libro libro;
+        final String autor;
+        final String isbn;
+        final String prestatario;
+        final long vencimiento;
+
+        private Registro(byte tipo, long secuencia, long marcaTiempo, Libro libro, String autor, String isbn,
+                String prestatario, long vencimiento) {
+            this.tipo = tipo;
+            this.secuencia = secuencia;
+            this.marcaTiempo = marcaTiempo;
+            this.libro = libro;
+            this.autor = autor;
+            this.isbn = isbn;
+            this.prestatario = prestatario;
+            this.vencimiento = vencimiento;
+        }
+    }
+
+    /** Elemento de la cola del escritor: un registro serializado o una orden de rotar/cerrar. */
+    private static final class Pendiente {
+        final byte[] datos;
+        final boolean rotar;
+        final long siguienteSecuencia;
+        final CompletableFuture<Void> confirmacion = new CompletableFuture<>();
+
+        Pendiente(byte[] datos, boolean rotar, long siguienteSecuencia) {
+            this.datos = datos;
+            this.rotar = rotar;
+            this.siguienteSecuencia = siguienteSecuencia;
+        }
+    }
+
+    private final Path directorio;
+    private final BlockingQueue<Pendiente> cola = new LinkedBlockingQueue<>();
+    private final Thread escritor;
+    private FileChannel canal;
+    private long secuencia;
+    private long registrosDesdeRotacion;
+    private boolean cerrado;
+    private volatile IOException falla;
+
+    /**
+     * Abre un segmento nuevo cuyo primer registro tendrá {@code siguienteSecuencia}.
+     */
+    DiarioOperaciones(Path directorio, long siguienteSecuencia) throws IOException {
+        this.directorio = directorio;
+        this.secuencia = siguienteSecuencia - 1;
+        this.canal = abrirSegmento(siguienteSecuencia);
+        this.escritor = new Thread(this::escribirEnLotes, "diario-catalogo");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    CompletableFuture<Void> registrar(Libro libro) {
+        // el estado de préstamo se lee junto con los datos, dentro del monitor del libro
+        synchronized (libro) {
+            return encolar(REGISTRAR, salida -> escribirLibro(salida, libro));
+        }
+    }
+
+    CompletableFuture<Void> eliminarAutor(String autor) {
+        return encolar(ELIMINAR_AUTOR, salida -> escribirTexto(salida, autor));
+    }
+
+    CompletableFuture<Void> eliminarLibro(String autor, String isbn) {
+        return encolar(ELIMINAR_LIBRO, salida -> {
+            escribirTexto(salida, autor);
+            escribirTexto(salida, isbn);
+        });
+    }
+
+    CompletableFuture<Void> prestar(String isbn, String prestatario, long vencimiento) {
+        return encolarTodos(Collections.singletonList(cambioPrestar(isbn, prestatario, vencimiento)));
+    }
+
+    CompletableFuture<Void> devolver(String isbn) {
+        return encolarTodos(Collections.singletonList(cambioDevolver(isbn)));
+    }
+
+    /** Registro aún sin secuencia, para {@link #encolarTodos}. */
+    static final class Cambio {
+        private final byte tipo;
+        private final Campos campos;
+
+        private Cambio(byte tipo, Campos campos) {
+            this.tipo = tipo;
+            this.campos = campos;
+        }
+    }
+
+    static Cambio cambioPrestar(String isbn, String prestatario, long vencimiento) {
+        return new Cambio(PRESTAR, salida -> {
+            escribirTexto(salida, isbn);
+            escribirTexto(salida, prestatario);
+            salida.writeLong(vencimiento);
+        });
+    }
+
+    static Cambio cambioDevolver(String isbn) {
+        return new Cambio(DEVOLVER, salida -> escribirTexto(salida, isbn));
+    }
+
+    /** Última secuencia asignada. */
+    synchronized long secuencia() {
+        return secuencia;
+    }
+
+    synchronized long registrosDesdeRotacion() {
+        return registrosDesdeRotacion;
+    }
+
+    /** Rotación encolada por {@link #rotar}. */
+    static final class Rotacion {
+        /** Última secuencia del segmento que se cierra: todo registro posterior va a segmentos nuevos. */
+        final long ultima;
+        /** Se completa cuando el escritor sincronizó lo encolado antes y abrió el segmento nuevo. */
+        final CompletableFuture<Void> confirmacion;
+
+        private Rotacion(long ultima, CompletableFuture<Void> confirmacion) {
+            this.ultima = ultima;
+            this.confirmacion = confirmacion;
+        }
+    }
+
+    /**
+     * Encola el cierre del segmento vigente (tras escribir y sincronizar todo lo encolado
+     * antes) y la apertura de otro. No espera el fsync: la secuencia de corte queda fijada
+     * al encolar, así quien la pide con un monitor tomado puede esperar después de soltarlo.
+     */
+    Rotacion rotar() {
+        synchronized (this) {
+            verificarAbierto();
+            registrosDesdeRotacion = 0;
+            Pendiente orden = new Pendiente(null, true, secuencia + 1);
+            cola.add(orden);
+            return new Rotacion(secuencia, orden.confirmacion);
+        }
+    }
+
+    /**
+     * Borra los segmentos cuyos registros son todos anteriores o iguales a {@code secuencia}.
+     * Solo es seguro cuando una instantánea que cubre esa secuencia ya está en disco.
+     */
+    void descartarHasta(long secuencia) throws IOException {
+        List<Path> segmentos = segmentos(directorio);
+        for (int i = 0; i + 1 < segmentos.size(); i++) {
+            // un segmento termina justo antes del primer registro del siguiente
+            if (primeraSecuencia(segmentos.get(i + 1)) - 1 <= secuencia) Files.delete(segmentos.get(i));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Pendiente orden;
+        synchronized (this) {
+            if (cerrado) return;
+            cerrado = true;
+            orden = new Pendiente(null, false, 0);
+            cola.add(orden);
+        }
+        try {
+            orden.confirmacion.join();
+            escritor.join();
+        } catch (CompletionException ex) {
+            throw falla != null ? falla : new IOException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Espera la confirmación de un registro; un fallo de escritura llega como UncheckedIOException.
+     */
+    static void esperar(CompletableFuture<Void> confirmacion) {
+        if (confirmacion == null) return;
+        try {
+            confirmacion.join();
+        } catch (CompletionException ex) {
+            Throwable causa = ex.getCause();
+            if (causa instanceof IOException) throw new UncheckedIOException((IOException) causa);
+            throw ex;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Campos {
+        void escribir(DataOutputStream salida) throws IOException;
+    }
+
+    private CompletableFuture<Void> encolar(byte tipo, Campos campos) {
+        return encolarTodos(Collections.singletonList(new Cambio(tipo, campos)));
+    }
+
+    /**
+     * Asigna las secuencias y encola en el mismo bloque sincronizado, de modo que el orden
+     * del archivo coincide con el de las secuencias. Todos los registros se serializan antes
+     * de asignar la primera, así o se encolan todos (con secuencias consecutivas) o ninguno.
+     * @return la confirmación del último, que el escritor completa después de los anteriores.
+     */
+    CompletableFuture<Void> encolarTodos(List<Cambio> cambios) {
+        if (cambios.isEmpty()) return CompletableFuture.completedFuture(null);
+        synchronized (this) {
+            verificarAbierto();
+            long marcaTiempo = System.currentTimeMillis();
+            byte[][] datos = new byte[cambios.size()][];
+            for (int i = 0; i < datos.length; i++) {
+                Cambio cambio = cambios.get(i);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+                DataOutputStream salida = new DataOutputStream(bytes);
+                try {
+                    salida.writeByte(cambio.tipo);
+                    salida.writeLong(secuencia + 1 + i);
+                    salida.writeLong(marcaTiempo);
+                    cambio.campos.escribir(salida);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                datos[i] = bytes.toByteArray();
+            }
+            Pendiente pendiente = null;
+            for (byte[] registro : datos) {
+                pendiente = new Pendiente(registro, false, 0);
+                cola.add(pendiente);
+            }
+            secuencia += datos.length;
+            registrosDesdeRotacion += datos.length;
+            return pendiente.confirmacion;
+        }
+    }
+
+    private void verificarAbierto() {
+        if (cerrado) throw new IllegalStateException("El diario de operaciones está cerrado");
+        if (falla != null) throw new UncheckedIOException("El diario de operaciones falló", falla);
+    }
+
+    /** Bucle del hilo escritor: un write y un force por lote. */
+    private void escribirEnLotes() {
+        List<Pendiente> lote = new ArrayList<>();
+        boolean seguir = true;
+        while (seguir) {
+            try {
+                lote.add(cola.take());
+            } catch (InterruptedException ex) {
+                continue;
+            }
+            cola.drainTo(lote);
+            List<Pendiente> escritos = new ArrayList<>(lote.size());
+            try {
+                for (Pendiente p : lote) {
+                    if (p.datos != null) {
+                        escribirRegistro(p.datos);
+                        escritos.add(p);
+                        continue;
+                    }
+                    canal.force(false);
+                    confirmar(escritos);
+                    if (p.rotar) {
+                        canal.close();
+                        canal = abrirSegmento(p.siguienteSecuencia);
+                    } else {
+                        canal.close();
+                        seguir = false;
+                    }
+                    p.confirmacion.complete(null);
+                }
+                if (seguir) {
+                    canal.force(false);
+                    confirmar(escritos);
+                }
+            } catch (IOException ex) {
+                falla = ex;
+                for (Pendiente p : lote) p.confirmacion.completeExceptionally(ex);
+                List<Pendiente> restantes = new ArrayList<>();
+                cola.drainTo(restantes);
+                for (Pendiente p : restantes) p.confirmacion.completeExceptionally(ex);
+                synchronized (this) {
+                    seguir = !cerrado;
+                }
+            }
+            lote.clear();
+        }
+    }
+
+    private static void confirmar(List<Pendiente> escritos) {
+        for (Pendiente p : escritos) p.confirmacion.complete(null);
+        escritos.clear();
+    }
+
+    private void escribirRegistro(byte[] datos) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(datos);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + datos.length);
+        buffer.putInt(datos.length).putInt((int) crc.getValue()).put(datos).flip();
+        while (buffer.hasRemaining()) canal.write(buffer);
+    }
+
+    private FileChannel abrirSegmento(long primeraSecuencia) throws IOException {
+        Path archivo = directorio.resolve(String.format("%s%020d%s", PREFIJO, primeraSecuencia, EXTENSION));
+        return FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Lee en orden todos los segmentos del directorio y entrega al consumidor los registros
+     * con secuencia mayor que {@code desde}. En cada segmento la lectura se detiene en el
+     * primer registro cortado o corrupto.
+     * @return la mayor secuencia leída (o {@code desde} si no hubo registros posteriores).
+     */
+    static long reproducir(Path directorio, long desde, Consumer<Registro> aplicar) throws IOException {
+        long ultima = desde;
+        for (Path segmento : segmentos(directorio)) {
+            long tamano = Files.size(segmento);
+            long valido = 0;
+            try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmento)))) {
+                byte[] datos;
+                while ((datos = leerDatos(entrada, tamano - valido)) != null) {
+                    Registro registro = decodificar(datos);
+                    if (registro == null) break;
+                    valido += 8 + datos.length;
+                    if (registro.secuencia <= desde) continue;
+                    aplicar.accept(registro);
+                    ultima = Math.max(ultima, registro.secuencia);
+                }
+            }
+            if (valido < tamano) truncar(segmento, valido);
+        }
+        return ultima;
+    }
+
+    /**
+     * Descarta lo que sigue al último registro válido. Sin esto, si el diario nuevo reabre
+     * este segmento los registros confirmados quedarían después del dañado y la próxima
+     * recuperación, que se detiene en él, los perdería.
+     */
+    private static void truncar(Path segmento, long valido) throws IOException {
+        try (FileChannel canal = FileChannel.open(segmento, StandardOpenOption.WRITE)) {
+            canal.truncate(valido);
+            canal.force(true);
+        }
+    }
+
+    /**
+     * Contenido del siguiente registro, o null si está cortado o su CRC no coincide.
+     * @param restante bytes del segmento desde la posición actual; un largo mayor es basura.
+     */
+    private static byte[] leerDatos(DataInputStream entrada, long restante) throws IOException {
+        byte[] datos;
+        int crcEsperado;
+        try {
+            int longitud = entrada.readInt();
+            crcEsperado = entrada.readInt();
+            if (longitud <= 0 || longitud > restante - 8) return null;
+            datos = new byte[longitud];
+            entrada.readFully(datos);
+        } catch (EOFException ex) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(datos);
+        return (int) crc.getValue() == crcEsperado ? datos : null;
+    }
+
+    /**
+     * Operación del registro, o null si su tipo es desconocido o sus campos no ocupan
+     * exactamente el registro: en ambos casos se trata como corrupto.
+     */
+    private static Registro decodificar(byte[] datos) throws IOException {
+        DataInputStream campos = new DataInputStream(new ByteArrayInputStream(datos));
+        try {
+            Registro registro = decodificarCampos(campos);
+            return campos.available() == 0 ? registro : null;
+        } catch (EOFException ex) {
+            return null;
+        }
+    }
+
+    private static Registro decodificarCampos(DataInputStream campos) throws IOException {
+        byte tipo = campos.readByte();
+        long secuencia = campos.readLong();
+        long marcaTiempo = campos.readLong();
+        switch (tipo) {
+            case REGISTRAR:
+                return new Registro(tipo, secuencia, marcaTiempo, leerLibro(campos), null, null, null, 0);
+            case ELIMINAR_AUTOR:
+                return new Registro(tipo, secuencia, marcaTiempo, null, leerTexto(campos), null, null, 0);
+            case ELIMINAR_LIBRO: {
+                String autor = leerTexto(campos);
+                return new Registro(tipo, secuencia, marcaTiempo, null, autor, leerTexto(campos), null, 0);
+            }
+            case PRESTAR: {
+                String isbn = leerTexto(campos);
+                String prestatario = leerTexto(campos);
+                long vencimiento = campos.readLong();
+                return new Registro(tipo, secuencia, marcaTiempo, null, null, isbn, prestatario, vencimiento);
+            }
+            case DEVOLVER:
+                return new Registro(tipo, secuencia, marcaTiempo, null, null, leerTexto(campos), null, 0);
+            default:
+                return null;
+        }
+    }
+
+    /** Segmentos del directorio ordenados por su primera secuencia. */
+    private static List<Path> segmentos(Path directorio) throws IOException {
+        List<Path> segmentos = new ArrayList<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, PREFIJO + "*" + EXTENSION)) {
+            archivos.forEach(segmentos::add);
+        }
+        segmentos.sort((a, b) -> Long.compare(primeraSecuencia(a), primeraSecuencia(b)));
+        return segmentos;
+    }
+
+    private static long primeraSecuencia(Path segmento) {
+        String nombre = segmento.getFileName().toString();
+        return Long.parseLong(nombre.substring(PREFIJO.length(), nombre.length() - EXTENSION.length()));
+    }
+
+    /* Codificación compartida con la instantánea binaria */
+
+    static void escribirLibro(DataOutputStream salida, Libro libro) throws IOException {
+        escribirTexto(salida, libro.getIsbn());
+        escribirTexto(salida, libro.getTitulo());
+        escribirTexto(salida, libro.getAutor());
+        escribirTexto(salida, libro.getEditorial());
+        salida.writeInt(libro.getAnioPublicacion());
+        escribirTexto(salida, libro.getCategoria());
+        escribirTexto(salida, libro.isDisponible() ? null : libro.getPrestatario());
+    }
+
+    static Libro leerLibro(DataInputStream entrada) throws IOException {
+        String isbn = leerTexto(entrada);
+        String titulo = leerTexto(entrada);
+        String autor = leerTexto(entrada);
+        String editorial = leerTexto(entrada);
+        int anio = entrada.readInt();
+        String categoria = leerTexto(entrada);
+        String prestatario = leerTexto(entrada);
+        Libro libro = new Libro(isbn, titulo, autor, editorial, anio, categoria);
+        if (prestatario != null) libro.prestar(prestatario);
+        return libro;
+    }
+
+    /**
+     * Texto con su marca. Los largos se parten en trozos de writeUTF, que codifica cada
+     * carácter por separado: así ningún largo hace fallar la escritura y el texto vuelve
+     * idéntico (incluso con sustitutos sueltos, que UTF-8 estándar reemplazaría).
+     */
+    static void escribirTexto(DataOutputStream salida, String texto) throws IOException {
+        if (texto == null) {
+            salida.writeByte(NULO);
+        } else if (texto.length() <= TROZO) {
+            salida.writeByte(CORTO);
+            salida.writeUTF(texto);
+        } else {
+            salida.writeByte(LARGO);
+            salida.writeInt(texto.length());
+            for (int i = 0; i < texto.length(); i += TROZO) {
+                salida.writeUTF(texto.substring(i, Math.min(texto.length(), i + TROZO)));
+            }
+        }
+    }
+
+    static String leerTexto(DataInputStream entrada) throws IOException {
+        byte marca = entrada.readByte();
+        switch (marca) {
+            case NULO:
+                return null;
+            case CORTO:
+                return entrada.readUTF();
+            case LARGO: {
+                int largo = entrada.readInt();
+                StringBuilder texto = new StringBuilder(largo);
+                while (texto.length() < largo) texto.append(entrada.readUTF());
+                return texto.toString();
+            }
+            default:
+                throw new IOException("Marca de texto desconocida: " + marca);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package servicio;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma log-lineal al estilo HDR: cada potencia de dos se divide en 32 cubetas
+ * iguales, así el error relativo de cualquier percentil queda por debajo del 3% con
+ * unas pocas cientos de cubetas fijas. Registrar es un LongAdder por cubeta: sin
+ * candados y sin contención entre hilos.
+ *
+ * Los valores negativos cuentan como 0 y los mayores al máximo como el máximo.
+ */
+final class Histograma {
+    private static final int BITS_SUBCUBETA = 5;
+    private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+
+    private final long maximoRegistrable;
+    private final LongAdder[] cubetas;
+    private final LongAdder cantidad = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    /** @param bits los valores registrables van de 0 a 2^bits - 1. */
+    Histograma(int bits) {
+        if (bits <= BITS_SUBCUBETA || bits > 62) throw new IllegalArgumentException("Bits inválidos: " + bits);
+        this.maximoRegistrable = (1L << bits) - 1;
+        this.cubetas = new LongAdder[indice(maximoRegistrable) + 1];
+        for (int i = 0; i < cubetas.length; i++) cubetas[i] = new LongAdder();
+    }
+
+    void registrar(long valor) {
+        long v = Math.min(Math.max(valor, 0), maximoRegistrable);
+        cubetas[indice(v)].increment();
+        cantidad.increment();
+        suma.add(v);
+        maximo.accumulate(v);
+    }
+
+    /**
+     * Cubeta del valor: los primeros 64 valores tienen cubeta propia; a partir de ahí cada
+     * potencia de dos [2^k, 2^(k+1)) se reparte en 32 cubetas de ancho 2^(k-5).
+     */
+    static int indice(long valor) {
+        int desplazamiento = Math.max(0, 63 - Long.numberOfLeadingZeros(valor) - BITS_SUBCUBETA);
+        return (desplazamiento << BITS_SUBCUBETA) + (int) (valor >>> desplazamiento);
+    }
+
+    /** Mayor valor que cae en la cubeta (el percentil se informa por arriba, como HDR). */
+    static long techo(int indice) {
+        if (indice < 2 * SUBCUBETAS) return indice;
+        int desplazamiento = (indice >>> BITS_SUBCUBETA) - 1;
+        long mantisa = indice - ((long) desplazamiento << BITS_SUBCUBETA);
+        return ((mantisa + 1) << desplazamiento) - 1;
+    }
+
+    long cantidad() {
+        return cantidad.sum();
+    }
+
+    double media() {
+        long n = cantidad.sum();
+        return n == 0 ? 0 : (double) suma.sum() / n;
+    }
+
+    long maximo() {
+        return maximo.get();
+    }
+
+    /**
+     * Valores de los percentiles pedidos (entre 0 y 100), leídos de una sola copia de las
+     * cubetas para que sean coherentes entre sí aunque otros hilos sigan registrando.
+     */
+    long[] percentiles(double... percentiles) {
+        long[] conteos = new long[cubetas.length];
+        long total = 0;
+        for (int i = 0; i < conteos.length; i++) {
+            conteos[i] = cubetas[i].sum();
+            total += conteos[i];
+        }
+        long[] valores = new long[percentiles.length];
+        if (total == 0) return valores;
+        for (int p = 0; p < percentiles.length; p++) {
+            long objetivo = Math.max(1, (long) Math.ceil(percentiles[p] / 100.0 * total));
+            long acumulado = 0;
+            int i = 0;
+            while (i < conteos.length - 1 && (acumulado += conteos[i]) < objetivo) i++;
+            valores[p] = Math.min(techo(i), maximo());
+        }
+        return valores;
+    }
+
+    void reiniciar() {
+        for (LongAdder cubeta : cubetas) cubeta.reset();
+        cantidad.reset();
+        suma.reset();
+        maximo.reset();
+    }
+}
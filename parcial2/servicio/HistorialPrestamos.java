@@ -0,0 +1,406 @@
+package servicio;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Historial de préstamos guardado por columnas: cada préstamo ocupa siete int (ISBN y
+ * prestatario como índices de diccionario, inicio, vencimiento y devolución en segundos
+ * desde 2000-01-01 y los enlaces al préstamo anterior del mismo libro y del mismo
+ * prestatario), unos 28 bytes, así que millones de préstamos caben en memoria.
+ *
+ * Los enlaces encadenan el historial de cada libro y de cada prestatario del más reciente
+ * al más antiguo, y cada prestatario tiene además la lista de sus préstamos activos: ambas
+ * consultas cuestan O(k) en los préstamos devueltos. Los activos están en un montículo
+ * mínimo por vencimiento; una devolución no lo toca (borrado perezoso), las entradas
+ * devueltas se descartan al llegar a la cima o al reconstruirlo cuando superan a las vivas.
+ *
+ * Todos los métodos son sincronizados sobre el historial.
+ */
+final class HistorialPrestamos {
+    /** 2000-01-01T00:00Z en segundos: un int cubre de 1932 a 2068. */
+    private static final long EPOCA = 946_684_800L;
+    private static final int ACTIVO = Integer.MIN_VALUE;
+    private static final int NINGUNO = -1;
+    private static final int MAGICO = 0x50524531; // "PRE1"
+
+    private final Map<String, Integer> idIsbn = new HashMap<>();
+    private final List<String> isbns = new ArrayList<>();
+    private final Map<String, Integer> idPrestatario = new HashMap<>();
+    private final List<String> prestatarios = new ArrayList<>();
+
+    /* columnas, una posición por préstamo */
+    private int cantidad;
+    private int[] isbn = new int[16];
+    private int[] prestatario = new int[16];
+    private int[] inicio = new int[16];
+    private int[] vence = new int[16];
+    private int[] devolucion = new int[16];
+    private int[] anteriorLibro = new int[16];
+    private int[] anteriorPrestatario = new int[16];
+
+    /* por ISBN y por prestatario, indexados por su id de diccionario */
+    private int[] ultimoPorIsbn = new int[16];
+    private int[] activoPorIsbn = new int[16];
+    private int[] ultimoPorPrestatario = new int[16];
+    private int[][] activosPorPrestatario = new int[16][];
+    private int[] cantidadActivos = new int[16];
+
+    private int[] monticulo = new int[16];
+    private int enMonticulo;
+    private int activos;
+
+    /** Copia consistente para escribir a disco fuera del monitor. */
+    static final class Copia {
+        private final String[] isbns;
+        private final String[] prestatarios;
+        private final int cantidad;
+        private final int[] isbn;
+        private final int[] prestatario;
+        private final int[] inicio;
+        private final int[] vence;
+        private final int[] devolucion;
+
+        private Copia(HistorialPrestamos h) {
+            isbns = h.isbns.toArray(new String[0]);
+            prestatarios = h.prestatarios.toArray(new String[0]);
+            cantidad = h.cantidad;
+            // las demás columnas solo crecen: lo escrito hasta cantidad ya no cambia
+            isbn = h.isbn;
+            prestatario = h.prestatario;
+            inicio = h.inicio;
+            vence = h.vence;
+            devolucion = Arrays.copyOf(h.devolucion, h.cantidad);
+        }
+
+        /** Formato: [int mágico][diccionarios][int préstamos][cinco columnas]. */
+        void escribir(DataOutputStream salida) throws IOException {
+            salida.writeInt(MAGICO);
+            escribirTextos(salida, isbns);
+            escribirTextos(salida, prestatarios);
+            salida.writeInt(cantidad);
+            for (int[] columna : new int[][] { isbn, prestatario, inicio, vence, devolucion }) {
+                for (int i = 0; i < cantidad; i++) salida.writeInt(columna[i]);
+            }
+        }
+
+        private static void escribirTextos(DataOutputStream salida, String[] textos) throws IOException {
+            salida.writeInt(textos.length);
+            for (String texto : textos) DiarioOperaciones.escribirTexto(salida, texto);
+        }
+    }
+
+    synchronized Copia copiar() {
+        return new Copia(this);
+    }
+
+    /**
+     * Agrega los préstamos escritos por {@link Copia#escribir} (a un historial vacío).
+     */
+    synchronized void leer(DataInputStream entrada) throws IOException {
+        int magico = entrada.readInt();
+        if (magico != MAGICO) throw new IOException("Historial de préstamos con formato desconocido");
+        String[] libros = leerTextos(entrada);
+        String[] personas = leerTextos(entrada);
+        int total = entrada.readInt();
+        int[][] columnas = new int[5][total];
+        for (int[] columna : columnas) {
+            for (int i = 0; i < total; i++) columna[i] = entrada.readInt();
+        }
+        for (int i = 0; i < total; i++) {
+            agregar(idIsbn(libros[columnas[0][i]]), idPrestatario(personas[columnas[1][i]]),
+                    columnas[2][i], columnas[3][i], columnas[4][i]);
+        }
+    }
+
+    private static String[] leerTextos(DataInputStream entrada) throws IOException {
+        String[] textos = new String[entrada.readInt()];
+        for (int i = 0; i < textos.length; i++) textos[i] = DiarioOperaciones.leerTexto(entrada);
+        return textos;
+    }
+
+    /**
+     * Abre un préstamo. Si el libro figuraba prestado (el diario no tenía su devolución)
+     * ese préstamo se cierra en la misma fecha.
+     */
+    synchronized void prestar(String isbnLibro, String nombre, long inicioMillis, long venceMillis) {
+        int desde = segundos(inicioMillis);
+        int hasta = segundos(venceMillis);
+        int libro = idIsbn(isbnLibro);
+        if (activoPorIsbn[libro] != NINGUNO) cerrar(activoPorIsbn[libro], desde);
+        agregar(libro, idPrestatario(nombre), desde, hasta, ACTIVO);
+    }
+
+    /** Abre el préstamo solo si el libro no figura ya prestado a ese prestatario. */
+    synchronized void asegurarActivo(String isbnLibro, String nombre, long inicioMillis, long venceMillis) {
+        Integer libro = idIsbn.get(isbnLibro);
+        if (libro != null && activoPorIsbn[libro] != NINGUNO
+                && prestatarios.get(prestatario[activoPorIsbn[libro]]).equals(nombre)) return;
+        prestar(isbnLibro, nombre, inicioMillis, venceMillis);
+    }
+
+    /**
+     * Cierra el préstamo activo del libro, si lo tiene.
+     * @return false si el libro no figuraba prestado.
+     */
+    synchronized boolean devolver(String isbnLibro, long fechaMillis) {
+        Integer libro = idIsbn.get(isbnLibro);
+        if (libro == null || activoPorIsbn[libro] == NINGUNO) return false;
+        cerrar(activoPorIsbn[libro], segundos(fechaMillis));
+        return true;
+    }
+
+    /**
+     * Cierra en {@code fechaMillis} cada préstamo activo cuyo libro ya no está prestado a
+     * ese prestatario según {@code prestatarioActual} (null: disponible o eliminado).
+     */
+    synchronized void conciliar(Function<String, String> prestatarioActual, long fechaMillis) {
+        int fecha = segundos(fechaMillis);
+        for (int libro = 0; libro < isbns.size(); libro++) {
+            int p = activoPorIsbn[libro];
+            if (p != NINGUNO && !prestatarios.get(prestatario[p]).equals(prestatarioActual.apply(isbns.get(libro)))) {
+                cerrar(p, fecha);
+            }
+        }
+    }
+
+    /** Préstamo activo del libro, o null. */
+    synchronized Prestamo activo(String isbnLibro) {
+        Integer libro = idIsbn.get(isbnLibro);
+        return libro == null || activoPorIsbn[libro] == NINGUNO ? null : prestamo(activoPorIsbn[libro]);
+    }
+
+    /** Préstamos activos del prestatario por fecha de vencimiento. O(k log k). */
+    synchronized List<Prestamo> activosDe(String nombre) {
+        Integer persona = idPrestatario.get(nombre);
+        if (persona == null) return new ArrayList<>();
+        return prestamosPorVencimiento(activosPorPrestatario[persona], cantidadActivos[persona]);
+    }
+
+    /** Hasta {@code limite} préstamos del prestatario, del más reciente al más antiguo. */
+    synchronized List<Prestamo> historialDe(String nombre, int limite) {
+        Integer persona = idPrestatario.get(nombre);
+        return persona == null ? new ArrayList<>() : cadena(ultimoPorPrestatario[persona], anteriorPrestatario, limite);
+    }
+
+    /** Hasta {@code limite} préstamos del libro, del más reciente al más antiguo. */
+    synchronized List<Prestamo> historialLibro(String isbnLibro, int limite) {
+        Integer libro = idIsbn.get(isbnLibro);
+        return libro == null ? new ArrayList<>() : cadena(ultimoPorIsbn[libro], anteriorLibro, limite);
+    }
+
+    /**
+     * Préstamos activos vencidos en {@code ahoraMillis}, del más atrasado al menos. Recorre
+     * solo la parte del montículo con vencimiento ya pasado: O(m) en los vencidos más las
+     * entradas devueltas que aún queden en esa parte.
+     */
+    synchronized List<Prestamo> vencidos(long ahoraMillis) {
+        descartarCima();
+        int limite = segundosAcotados(ahoraMillis);
+        int[] encontrados = new int[16];
+        int total = 0;
+        int[] pila = new int[16];
+        int tope = 0;
+        if (enMonticulo > 0) pila[tope++] = 0;
+        while (tope > 0) {
+            int i = pila[--tope];
+            int p = monticulo[i];
+            // los hijos vencen después del padre: si el padre no venció, su subárbol tampoco
+            if (vence[p] > limite) continue;
+            if (devolucion[p] == ACTIVO) {
+                if (total == encontrados.length) encontrados = Arrays.copyOf(encontrados, total * 2);
+                encontrados[total++] = p;
+            }
+            if (tope + 2 > pila.length) pila = Arrays.copyOf(pila, pila.length * 2);
+            if (2 * i + 1 < enMonticulo) pila[tope++] = 2 * i + 1;
+            if (2 * i + 2 < enMonticulo) pila[tope++] = 2 * i + 2;
+        }
+        return prestamosPorVencimiento(encontrados, total);
+    }
+
+    synchronized int cantidad() {
+        return cantidad;
+    }
+
+    synchronized int activos() {
+        return activos;
+    }
+
+    /* ---- columnas ---- */
+
+    private void agregar(int libro, int persona, int desde, int hasta, int devuelto) {
+        if (cantidad == isbn.length) {
+            int capacidad = cantidad + (cantidad >> 1);
+            isbn = Arrays.copyOf(isbn, capacidad);
+            prestatario = Arrays.copyOf(prestatario, capacidad);
+            inicio = Arrays.copyOf(inicio, capacidad);
+            vence = Arrays.copyOf(vence, capacidad);
+            devolucion = Arrays.copyOf(devolucion, capacidad);
+            anteriorLibro = Arrays.copyOf(anteriorLibro, capacidad);
+            anteriorPrestatario = Arrays.copyOf(anteriorPrestatario, capacidad);
+        }
+        int p = cantidad++;
+        isbn[p] = libro;
+        prestatario[p] = persona;
+        inicio[p] = desde;
+        vence[p] = hasta;
+        devolucion[p] = devuelto;
+        anteriorLibro[p] = ultimoPorIsbn[libro];
+        ultimoPorIsbn[libro] = p;
+        anteriorPrestatario[p] = ultimoPorPrestatario[persona];
+        ultimoPorPrestatario[persona] = p;
+        if (devuelto != ACTIVO) return;
+
+        activoPorIsbn[libro] = p;
+        int[] suyos = activosPorPrestatario[persona];
+        if (suyos == null) suyos = activosPorPrestatario[persona] = new int[2];
+        else if (cantidadActivos[persona] == suyos.length) suyos = activosPorPrestatario[persona] = Arrays.copyOf(suyos, suyos.length * 2);
+        suyos[cantidadActivos[persona]++] = p;
+        activos++;
+        if (enMonticulo == monticulo.length) monticulo = Arrays.copyOf(monticulo, enMonticulo * 2);
+        monticulo[enMonticulo] = p;
+        subir(enMonticulo++);
+    }
+
+    /** Marca devuelto un préstamo activo; su entrada del montículo queda como borrada. */
+    private void cerrar(int p, int fecha) {
+        devolucion[p] = Math.max(fecha, inicio[p]);
+        activoPorIsbn[isbn[p]] = NINGUNO;
+        int persona = prestatario[p];
+        int[] suyos = activosPorPrestatario[persona];
+        for (int i = 0; i < cantidadActivos[persona]; i++) {
+            if (suyos[i] == p) {
+                suyos[i] = suyos[--cantidadActivos[persona]];
+                break;
+            }
+        }
+        activos--;
+        descartarCima();
+        if (enMonticulo > 2 * activos + 1024) reconstruirMonticulo();
+    }
+
+    private List<Prestamo> cadena(int desde, int[] anterior, int limite) {
+        List<Prestamo> prestamos = new ArrayList<>();
+        for (int p = desde; p != NINGUNO && prestamos.size() < limite; p = anterior[p]) prestamos.add(prestamo(p));
+        return prestamos;
+    }
+
+    private List<Prestamo> prestamosPorVencimiento(int[] ids, int total) {
+        // vencimiento en la mitad alta y id en la baja: ordenar los long ordena por vencimiento
+        long[] claves = new long[total];
+        for (int i = 0; i < total; i++) claves[i] = ((long) vence[ids[i]] << 32) | ids[i];
+        Arrays.sort(claves);
+        List<Prestamo> prestamos = new ArrayList<>(total);
+        for (long clave : claves) prestamos.add(prestamo((int) clave));
+        return prestamos;
+    }
+
+    private Prestamo prestamo(int p) {
+        return new Prestamo(isbns.get(isbn[p]), prestatarios.get(prestatario[p]), instante(inicio[p]),
+                instante(vence[p]), devolucion[p] == ACTIVO ? null : instante(devolucion[p]));
+    }
+
+    private int idIsbn(String texto) {
+        Integer id = idIsbn.get(texto);
+        if (id != null) return id;
+        int nuevo = isbns.size();
+        isbns.add(texto);
+        idIsbn.put(texto, nuevo);
+        if (nuevo == ultimoPorIsbn.length) {
+            ultimoPorIsbn = crecer(ultimoPorIsbn);
+            activoPorIsbn = crecer(activoPorIsbn);
+        }
+        ultimoPorIsbn[nuevo] = NINGUNO;
+        activoPorIsbn[nuevo] = NINGUNO;
+        return nuevo;
+    }
+
+    private int idPrestatario(String texto) {
+        Integer id = idPrestatario.get(texto);
+        if (id != null) return id;
+        int nuevo = prestatarios.size();
+        prestatarios.add(texto);
+        idPrestatario.put(texto, nuevo);
+        if (nuevo == ultimoPorPrestatario.length) {
+            ultimoPorPrestatario = crecer(ultimoPorPrestatario);
+            cantidadActivos = crecer(cantidadActivos);
+            activosPorPrestatario = Arrays.copyOf(activosPorPrestatario, ultimoPorPrestatario.length);
+        }
+        ultimoPorPrestatario[nuevo] = NINGUNO;
+        return nuevo;
+    }
+
+    private static int[] crecer(int[] arreglo) {
+        return Arrays.copyOf(arreglo, arreglo.length * 2);
+    }
+
+    /* ---- montículo por vencimiento ---- */
+
+    /** Quita de la cima las entradas de préstamos ya devueltos. */
+    private void descartarCima() {
+        while (enMonticulo > 0 && devolucion[monticulo[0]] != ACTIVO) {
+            monticulo[0] = monticulo[--enMonticulo];
+            if (enMonticulo > 0) bajar(0);
+        }
+    }
+
+    private void reconstruirMonticulo() {
+        enMonticulo = 0;
+        for (int libro = 0; libro < isbns.size(); libro++) {
+            if (activoPorIsbn[libro] != NINGUNO) monticulo[enMonticulo++] = activoPorIsbn[libro];
+        }
+        for (int i = enMonticulo / 2 - 1; i >= 0; i--) bajar(i);
+    }
+
+    private void subir(int i) {
+        int p = monticulo[i];
+        while (i > 0) {
+            int padre = (i - 1) / 2;
+            if (vence[monticulo[padre]] <= vence[p]) break;
+            monticulo[i] = monticulo[padre];
+            i = padre;
+        }
+        monticulo[i] = p;
+    }
+
+    private void bajar(int i) {
+        int p = monticulo[i];
+        while (true) {
+            int hijo = 2 * i + 1;
+            if (hijo >= enMonticulo) break;
+            if (hijo + 1 < enMonticulo && vence[monticulo[hijo + 1]] < vence[monticulo[hijo]]) hijo++;
+            if (vence[p] <= vence[monticulo[hijo]]) break;
+            monticulo[i] = monticulo[hijo];
+            i = hijo;
+        }
+        monticulo[i] = p;
+    }
+
+    /* ---- fechas ---- */
+
+    static int segundos(long millis) {
+        long segundos = Math.floorDiv(millis, 1000L) - EPOCA;
+        if (segundos <= ACTIVO || segundos > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Fecha fuera del rango del historial: " + Instant.ofEpochMilli(millis));
+        }
+        return (int) segundos;
+    }
+
+    /** Como {@link #segundos}, pero lleva las fechas fuera de rango al extremo más cercano. */
+    private static int segundosAcotados(long millis) {
+        long segundos = Math.floorDiv(millis, 1000L) - EPOCA;
+        return (int) Math.max(ACTIVO + 1L, Math.min(Integer.MAX_VALUE, segundos));
+    }
+
+    private static Instant instante(int segundos) {
+        return Instant.ofEpochSecond(EPOCA + segundos);
+    }
+}
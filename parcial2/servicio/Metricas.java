@@ -0,0 +1,253 @@
+package servicio;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import javax.management.ConstructorParameters;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Métricas de un {@link BibliotecaService}: latencia de cada operación (histograma
+ * log-lineal en nanosegundos, incluida la espera de candados y del diario), nodos
+ * visitados por descenso en el árbol, relación altura / altura óptima y tasas de acierto
+ * de la caché y de los índices de ISBN y de títulos.
+ *
+ * También informan si falló la última instantánea en segundo plano de un catálogo duradero.
+ *
+ * Vienen desactivadas. Desactivadas, cada operación solo lee un volatile y el árbol no
+ * tiene observador de descensos; activarlas en marcha no requiere detener el servicio.
+ */
+public final class Metricas implements MetricasMXBean {
+    /** Valor de {@link #iniciar()} cuando las métricas están desactivadas. */
+    static final long SIN_MEDIR = Long.MIN_VALUE;
+    /* 2^40 ns ≈ 18 minutos; ningún nodo visitado supera 2^16 niveles */
+    private static final int BITS_LATENCIA = 40;
+    private static final int BITS_DESCENSO = 16;
+
+    public enum Operacion {
+        REGISTRAR, REGISTRAR_LOTE, CARGA_MASIVA, ELIMINAR, PRESTAR, DEVOLVER,
+        PROCESAR_LOTE, BUSCAR_AUTOR, BUSCAR_ISBN, BUSCAR_CATEGORIA, BUSCAR_TITULO, CONSULTAR, LISTAR
+    }
+
+    /** Resumen de latencias de una operación, en microsegundos. */
+    public static final class ResumenLatencia {
+        private final String operacion;
+        private final long cantidad;
+        private final double media;
+        private final double p50;
+        private final double p99;
+        private final double p999;
+        private final double maximo;
+
+        @ConstructorParameters({"operacion", "cantidad", "media", "p50", "p99", "p999", "maximo"})
+        public ResumenLatencia(String operacion, long cantidad, double media, double p50, double p99, double p999, double maximo) {
+            this.operacion = operacion;
+            this.cantidad = cantidad;
+            this.media = media;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.maximo = maximo;
+        }
+
+        public String getOperacion() {
+            return operacion;
+        }
+
+        public long getCantidad() {
+            return cantidad;
+        }
+
+        public double getMedia() {
+            return media;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+
+        public double getP999() {
+            return p999;
+        }
+
+        public double getMaximo() {
+            return maximo;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-16s n=%-9d media=%9.1fµs p50=%9.1fµs p99=%9.1fµs p99.9=%9.1fµs máx=%9.1fµs",
+                    operacion, cantidad, media, p50, p99, p999, maximo);
+        }
+    }
+
+    private final BibliotecaService servicio;
+    private volatile boolean activas;
+    private final Histograma[] latencias = new Histograma[Operacion.values().length];
+    private final Histograma descensos = new Histograma(BITS_DESCENSO);
+    private final IntConsumer observadorDescensos = descensos::registrar;
+    private final LongAdder isbnAciertos = new LongAdder();
+    private final LongAdder isbnFallos = new LongAdder();
+    private final LongAdder tituloAciertos = new LongAdder();
+    private final LongAdder tituloFallos = new LongAdder();
+
+    Metricas(BibliotecaService servicio) {
+        this.servicio = servicio;
+        for (int i = 0; i < latencias.length; i++) latencias[i] = new Histograma(BITS_LATENCIA);
+    }
+
+    /** Marca de tiempo para {@link #registrar}, o {@link #SIN_MEDIR} si están desactivadas. */
+    long iniciar() {
+        return activas ? System.nanoTime() : SIN_MEDIR;
+    }
+
+    void registrar(Operacion operacion, long inicio) {
+        if (inicio != SIN_MEDIR) latencias[operacion.ordinal()].registrar(System.nanoTime() - inicio);
+    }
+
+    /** Resultado de una búsqueda por ISBN (el índice hash acierta o no). */
+    void busquedaIsbn(boolean encontrado) {
+        if (activas) (encontrado ? isbnAciertos : isbnFallos).increment();
+    }
+
+    void busquedaTitulo(boolean encontrado) {
+        if (activas) (encontrado ? tituloAciertos : tituloFallos).increment();
+    }
+
+    @Override
+    public boolean isActivas() {
+        return activas;
+    }
+
+    @Override
+    public void setActivas(boolean activas) {
+        this.activas = activas;
+        servicio.getArbol().observarDescensos(activas ? observadorDescensos : null);
+    }
+
+    @Override
+    public List<ResumenLatencia> getLatencias() {
+        List<ResumenLatencia> resumen = new ArrayList<>();
+        for (Operacion operacion : Operacion.values()) {
+            Histograma histograma = latencias[operacion.ordinal()];
+            long cantidad = histograma.cantidad();
+            if (cantidad == 0) continue;
+            long[] p = histograma.percentiles(50, 99, 99.9);
+            resumen.add(new ResumenLatencia(operacion.name(), cantidad, histograma.media() / 1000.0,
+                    p[0] / 1000.0, p[1] / 1000.0, p[2] / 1000.0, histograma.maximo() / 1000.0));
+        }
+        return resumen;
+    }
+
+    @Override
+    public long getDescensos() {
+        return descensos.cantidad();
+    }
+
+    @Override
+    public double getNodosPorDescensoMedia() {
+        return descensos.media();
+    }
+
+    @Override
+    public long getNodosPorDescensoP99() {
+        return descensos.percentiles(99)[0];
+    }
+
+    @Override
+    public long getNodosPorDescensoMaximo() {
+        return descensos.maximo();
+    }
+
+    @Override
+    public int getAltura() {
+        return servicio.alturaArbol();
+    }
+
+    @Override
+    public int getTotalAutores() {
+        return servicio.totalAutores();
+    }
+
+    @Override
+    public double getRelacionAlturaOptima() {
+        int autores = servicio.totalAutores();
+        if (autores == 0) return 1.0;
+        int optima = 64 - Long.numberOfLeadingZeros(autores);
+        return (double) servicio.alturaArbol() / optima;
+    }
+
+    @Override
+    public double getTasaAciertosCache() {
+        return servicio.estadisticasCache().tasaAciertos();
+    }
+
+    @Override
+    public double getTasaAciertosIsbn() {
+        return tasa(isbnAciertos.sum(), isbnFallos.sum());
+    }
+
+    @Override
+    public double getTasaAciertosTitulo() {
+        return tasa(tituloAciertos.sum(), tituloFallos.sum());
+    }
+
+    @Override
+    public String getFallaInstantanea() {
+        Exception falla = servicio.fallaInstantanea();
+        return falla == null ? null : falla.toString();
+    }
+
+    private static double tasa(long aciertos, long fallos) {
+        long total = aciertos + fallos;
+        return total == 0 ? 0 : (double) aciertos / total;
+    }
+
+    @Override
+    public void reiniciar() {
+        for (Histograma histograma : latencias) histograma.reiniciar();
+        descensos.reiniciar();
+        isbnAciertos.reset();
+        isbnFallos.reset();
+        tituloAciertos.reset();
+        tituloFallos.reset();
+    }
+
+    /**
+     * Publica estas métricas en el servidor MBean de la plataforma.
+     * @throws IllegalStateException si el nombre ya está registrado o no es válido.
+     */
+    public ObjectName registrarEnJmx(String nombre) {
+        try {
+            ObjectName objeto = new ObjectName("parcial2:type=Biblioteca,name=" + ObjectName.quote(nombre));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objeto);
+            return objeto;
+        } catch (JMException ex) {
+            throw new IllegalStateException("No se pudieron publicar las métricas: " + ex.getMessage(), ex);
+        }
+    }
+
+    /** Informe de varias líneas para la consola. */
+    public String informe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Métricas ").append(activas ? "activas" : "desactivadas").append('\n');
+        for (ResumenLatencia resumen : getLatencias()) sb.append("  ").append(resumen).append('\n');
+        sb.append(String.format(Locale.ROOT, "  Descensos: %d, nodos visitados media=%.2f p99=%d máx=%d%n",
+                getDescensos(), getNodosPorDescensoMedia(), getNodosPorDescensoP99(), getNodosPorDescensoMaximo()));
+        sb.append(String.format(Locale.ROOT, "  Altura %d con %d autores (%.2f veces la óptima)%n",
+                getAltura(), getTotalAutores(), getRelacionAlturaOptima()));
+        sb.append(String.format(Locale.ROOT, "  Aciertos: caché %.1f%%, índice ISBN %.1f%%, índice de títulos %.1f%%",
+                getTasaAciertosCache() * 100, getTasaAciertosIsbn() * 100, getTasaAciertosTitulo() * 100));
+        String falla = getFallaInstantanea();
+        if (falla != null) sb.append("\n  Falló la última instantánea: ").append(falla);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package servicio;
+
+import java.util.List;
+
+/**
+ * Vista JMX de {@link Metricas} (jconsole, VisualVM): se publica con
+ * {@link Metricas#registrarEnJmx(String)} bajo {@code parcial2:type=Biblioteca,name=...}.
+ */
+public interface MetricasMXBean {
+
+    boolean isActivas();
+
+    void setActivas(boolean activas);
+
+    /** Latencias de las operaciones con al menos una medición. */
+    List<Metricas.ResumenLatencia> getLatencias();
+
+    long getDescensos();
+
+    double getNodosPorDescensoMedia();
+
+    long getNodosPorDescensoP99();
+
+    long getNodosPorDescensoMaximo();
+
+    int getAltura();
+
+    int getTotalAutores();
+
+    /** Altura real dividida por la mínima posible, ⌈log2(autores + 1)⌉; 1.0 es perfecto. */
+    double getRelacionAlturaOptima();
+
+    double getTasaAciertosCache();
+
+    double getTasaAciertosIsbn();
+
+    double getTasaAciertosTitulo();
+
+    /**
+     * Fallo de la última instantánea en segundo plano de un catálogo duradero, o null si no
+     * hubo o una posterior se guardó. Se informa aunque las métricas estén desactivadas.
+     */
+    String getFallaInstantanea();
+
+    void reiniciar();
+}
@@ -0,0 +1,45 @@
+package servicio;
+
+/**
+ * Préstamo o devolución para {@link BibliotecaService#procesarLote}.
+ */
+public final class Operacion {
+    public enum Tipo {
+        PRESTAR, DEVOLVER
+    }
+
+    private final Tipo tipo;
+    private final String isbn;
+    private final String prestatario;
+
+    private Operacion(Tipo tipo, String isbn, String prestatario) {
+        this.tipo = tipo;
+        this.isbn = isbn;
+        this.prestatario = prestatario;
+    }
+
+    public static Operacion prestar(String isbn, String prestatario) {
+        return new Operacion(Tipo.PRESTAR, isbn, prestatario);
+    }
+
+    public static Operacion devolver(String isbn) {
+        return new Operacion(Tipo.DEVOLVER, isbn, null);
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public String getPrestatario() {
+        return prestatario;
+    }
+
+    @Override
+    public String toString() {
+        return tipo == Tipo.PRESTAR ? "prestar " + isbn + " a " + prestatario : "devolver " + isbn;
+    }
+}
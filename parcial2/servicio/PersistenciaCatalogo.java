@@ -0,0 +1,306 @@
+package servicio;
+
+import estructura.Instantanea;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import modelo.Libro;
+
+/**
+ * Persistencia del catálogo en un directorio: una instantánea binaria compacta
+ * ({@code catalogo.snap}) más los segmentos del diario de operaciones posteriores a ella.
+ *
+ * Al abrir se carga la instantánea con {@link BibliotecaService#cargarMasivo} y se reaplica
+ * la cola del diario. Cada vez que el diario acumula {@code umbral} registros se escribe
+ * una instantánea nueva y se borran los segmentos que cubre, así la recuperación nunca
+ * reaplica más que ese número de operaciones.
+ *
+ * Formato de la instantánea: [int mágico][long última secuencia cubierta][int libros]
+ * y los libros en orden alfabético, codificados como en el diario.
+ *
+ * Junto a ella se guarda el historial de préstamos ({@code prestamos.hist}: [long secuencia]
+ * y el formato de {@link HistorialPrestamos.Copia}), copiado en la misma secuencia. Al abrir,
+ * los préstamos y devoluciones posteriores se reconstruyen con la marca de tiempo de su
+ * registro del diario; lo que el diario ya no tenga (un directorio sin historial) se concilia
+ * con el estado de los libros, con fecha de apertura.
+ */
+final class PersistenciaCatalogo implements Closeable {
+    static final long UMBRAL_INSTANTANEA = 100_000;
+    private static final String INSTANTANEA = "catalogo.snap";
+    private static final String HISTORIAL = "prestamos.hist";
+    private static final int MAGICO = 0x42494231; // "BIB1"
+
+    private final Path directorio;
+    private final BibliotecaService servicio;
+    private final DiarioOperaciones diario;
+    private final long umbral;
+    private final ScheduledExecutorService programador;
+    /** Fallo de la última instantánea periódica; null si no falló o si una posterior se guardó. */
+    private volatile Exception fallaInstantanea;
+
+    private PersistenciaCatalogo(Path directorio, BibliotecaService servicio, DiarioOperaciones diario, long umbral) {
+        this.directorio = directorio;
+        this.servicio = servicio;
+        this.diario = diario;
+        this.umbral = umbral;
+        this.programador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "instantaneas-catalogo");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Recupera el catálogo guardado en el directorio (si lo hay) sobre un servicio vacío
+     * y a partir de ahí registra en el diario cada cambio del servicio.
+     */
+    static PersistenciaCatalogo abrir(Path directorio, BibliotecaService servicio, long umbral) throws IOException {
+        if (servicio.totalLibros() != 0) {
+            throw new IllegalArgumentException("La recuperación requiere un catálogo vacío");
+        }
+        Files.createDirectories(directorio);
+        servicio.pausarHistorial(true);
+        HistorialPrestamos historial = servicio.historial();
+        long baseHistorial = leerHistorial(directorio.resolve(HISTORIAL), historial);
+        long base = leerInstantanea(directorio.resolve(INSTANTANEA), servicio);
+        long[] reaplicados = { 0 };
+        long ultima = DiarioOperaciones.reproducir(directorio, Math.min(base, baseHistorial), registro -> {
+            if (registro.secuencia > baseHistorial) {
+                try {
+                    reaplicarHistorial(historial, registro, servicio.getPlazoPrestamo());
+                } catch (IllegalArgumentException ex) {
+                    // fecha fuera del rango del historial: la conciliación lo deja con fecha de hoy
+                }
+            }
+            if (registro.secuencia <= base) return;
+            try {
+                reaplicar(servicio, registro);
+            } catch (IllegalArgumentException | IllegalStateException ex) {
+                // la operación ya había fallado al registrarse o quedó superada por la instantánea
+            }
+            reaplicados[0]++;
+        });
+        servicio.conciliarHistorial();
+        servicio.pausarHistorial(false);
+
+        PersistenciaCatalogo persistencia =
+                new PersistenciaCatalogo(directorio, servicio, new DiarioOperaciones(directorio, ultima + 1), umbral);
+        servicio.adjuntarDiario(persistencia.diario);
+        if (reaplicados[0] > 0) persistencia.guardarInstantanea();
+        persistencia.programador.scheduleWithFixedDelay(persistencia::revisarUmbral, 1, 1, TimeUnit.SECONDS);
+        return persistencia;
+    }
+
+    /**
+     * Reaplica una operación del diario de forma idempotente: la instantánea puede incluir ya
+     * cambios posteriores a su secuencia, así que cada registro se lleva al estado que describe
+     * sin fallar si ya está aplicado.
+     */
+    private static void reaplicar(BibliotecaService servicio, DiarioOperaciones.Registro registro) {
+        Libro libro;
+        switch (registro.tipo) {
+            case DiarioOperaciones.REGISTRAR:
+                if (servicio.buscarPorIsbn(registro.libro.getIsbn()) == null) servicio.registrarLibro(registro.libro);
+                break;
+            case DiarioOperaciones.ELIMINAR_AUTOR:
+                if (!servicio.buscarPorAutor(registro.autor).isEmpty()) servicio.eliminarPorAutor(registro.autor);
+                break;
+            case DiarioOperaciones.ELIMINAR_LIBRO:
+                if (servicio.buscarPorIsbn(registro.isbn) != null) servicio.eliminarLibro(registro.autor, registro.isbn);
+                break;
+            case DiarioOperaciones.PRESTAR:
+                libro = servicio.buscarPorIsbn(registro.isbn);
+                if (libro == null || registro.prestatario.equals(libro.getPrestatario())) break;
+                if (!libro.isDisponible()) servicio.devolverLibro(registro.isbn);
+                servicio.prestarLibro(registro.isbn, registro.prestatario);
+                break;
+            case DiarioOperaciones.DEVOLVER:
+                libro = servicio.buscarPorIsbn(registro.isbn);
+                if (libro != null && !libro.isDisponible()) servicio.devolverLibro(registro.isbn);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Préstamos y devoluciones (y altas de libros ya prestados) con la fecha en que se
+     * anotaron en el diario. Las bajas por autor no guardan sus ISBN: las cierra la conciliación.
+     */
+    private static void reaplicarHistorial(HistorialPrestamos historial, DiarioOperaciones.Registro registro,
+                                           Duration plazo) {
+        switch (registro.tipo) {
+            case DiarioOperaciones.REGISTRAR:
+                Libro libro = registro.libro;
+                if (!libro.isDisponible()) {
+                    historial.asegurarActivo(libro.getIsbn(), libro.getPrestatario(), registro.marcaTiempo,
+                            registro.marcaTiempo + plazo.toMillis());
+                }
+                break;
+            case DiarioOperaciones.PRESTAR:
+                long vence = registro.vencimiento != 0 ? registro.vencimiento : registro.marcaTiempo + plazo.toMillis();
+                historial.prestar(registro.isbn, registro.prestatario, registro.marcaTiempo, vence);
+                break;
+            case DiarioOperaciones.DEVOLVER:
+            case DiarioOperaciones.ELIMINAR_LIBRO:
+                historial.devolver(registro.isbn, registro.marcaTiempo);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** @return la secuencia que cubre el historial guardado, o 0 si no hay. */
+    private static long leerHistorial(Path archivo, HistorialPrestamos historial) throws IOException {
+        if (!Files.exists(archivo)) return 0;
+        try (DataInputStream entrada =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo), 1 << 16))) {
+            long secuencia = entrada.readLong();
+            historial.leer(entrada);
+            return secuencia;
+        }
+    }
+
+    private static long leerInstantanea(Path archivo, BibliotecaService servicio) throws IOException {
+        if (!Files.exists(archivo)) return 0;
+        try (DataInputStream entrada =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo), 1 << 16))) {
+            if (entrada.readInt() != MAGICO) throw new IOException("Instantánea con formato desconocido: " + archivo);
+            long secuencia = entrada.readLong();
+            int total = entrada.readInt();
+            List<Libro> libros = new ArrayList<>(total);
+            for (int i = 0; i < total; i++) libros.add(DiarioOperaciones.leerLibro(entrada));
+            servicio.cargarMasivo(libros.iterator());
+            return secuencia;
+        }
+    }
+
+    /**
+     * Escribe una instantánea nueva y descarta los segmentos del diario que ya cubre.
+     * Rota el diario antes de tomar la versión del catálogo: todo registro con secuencia
+     * menor o igual a la devuelta por la rotación ya está aplicado en esa versión.
+     *
+     * El historial se copia al encolar la rotación, con su monitor tomado: como préstamos y
+     * devoluciones se anotan con ese monitor, la copia tiene exactamente los de secuencia
+     * menor o igual. El fsync de la rotación se espera después de soltarlo, para no frenar
+     * los préstamos durante la instantánea.
+     */
+    synchronized void guardarInstantanea() throws IOException {
+        DiarioOperaciones.Rotacion rotacion;
+        HistorialPrestamos.Copia prestamos;
+        HistorialPrestamos historial = servicio.historial();
+        synchronized (historial) {
+            rotacion = diario.rotar();
+            prestamos = historial.copiar();
+        }
+        DiarioOperaciones.esperar(rotacion.confirmacion);
+        long secuencia = rotacion.ultima;
+        Instantanea version = servicio.instantanea();
+        escribirArchivo(INSTANTANEA, salida -> {
+            salida.writeInt(MAGICO);
+            salida.writeLong(secuencia);
+            salida.writeInt(version.contarLibros());
+            try {
+                version.forEachInOrden(libro -> {
+                    try {
+                        synchronized (libro) {
+                            DiarioOperaciones.escribirLibro(salida, libro);
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        });
+        escribirArchivo(HISTORIAL, salida -> {
+            salida.writeLong(secuencia);
+            prestamos.escribir(salida);
+        });
+        sincronizarDirectorio();
+        diario.descartarHasta(secuencia);
+    }
+
+    @FunctionalInterface
+    private interface Contenido {
+        void escribir(DataOutputStream salida) throws IOException;
+    }
+
+    /** Escribe en un temporal sincronizado y lo renombra de forma atómica sobre {@code nombre}. */
+    private void escribirArchivo(String nombre, Contenido contenido) throws IOException {
+        Path temporal = directorio.resolve(nombre + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream salida =
+                    new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(canal), 1 << 16));
+            contenido.escribir(salida);
+            salida.flush();
+            canal.force(true);
+        }
+        Files.move(temporal, directorio.resolve(nombre), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Tarea periódica: nadie espera su resultado, así que un fallo queda registrado (ver
+     * {@link #fallaInstantanea()}) y se reintenta en la próxima revisión; el diario sigue
+     * cubriendo esos cambios.
+     */
+    private void revisarUmbral() {
+        if (diario.registrosDesdeRotacion() < umbral) return;
+        try {
+            guardarInstantanea();
+            fallaInstantanea = null;
+        } catch (IOException | RuntimeException ex) {
+            fallaInstantanea = ex;
+        }
+    }
+
+    Exception fallaInstantanea() {
+        return fallaInstantanea;
+    }
+
+    /** Hace duradero el renombrado; no todos los sistemas permiten abrir un directorio. */
+    private void sincronizarDirectorio() {
+        try (FileChannel canal = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException ex) {
+            // sin soporte: el renombrado atómico sigue siendo correcto, solo menos duradero
+        }
+    }
+
+    /**
+     * Escribe una instantánea final (así el próximo arranque no reaplica nada) y cierra el diario.
+     */
+    @Override
+    public void close() throws IOException {
+        programador.shutdownNow();
+        try {
+            programador.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            guardarInstantanea();
+        } finally {
+            diario.close();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package servicio;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Un préstamo del historial: quién tuvo el libro, desde cuándo, hasta cuándo debía
+ * devolverlo y cuándo lo devolvió (null si sigue prestado). Las fechas tienen precisión
+ * de segundos.
+ */
+public final class Prestamo {
+    private static final DateTimeFormatter FORMATO =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    private final String isbn;
+    private final String prestatario;
+    private final Instant inicio;
+    private final Instant vencimiento;
+    private final Instant devolucion;
+
+    Prestamo(String isbn, String prestatario, Instant inicio, Instant vencimiento, Instant devolucion) {
+        this.isbn = isbn;
+        this.prestatario = prestatario;
+        this.inicio = inicio;
+        this.vencimiento = vencimiento;
+        this.devolucion = devolucion;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public String getPrestatario() {
+        return prestatario;
+    }
+
+    public Instant getInicio() {
+        return inicio;
+    }
+
+    public Instant getVencimiento() {
+        return vencimiento;
+    }
+
+    /** Fecha de devolución, o null si el libro sigue prestado. */
+    public Instant getDevolucion() {
+        return devolucion;
+    }
+
+    public boolean isActivo() {
+        return devolucion == null;
+    }
+
+    /** Activo y con el vencimiento ya pasado en {@code ahora}. */
+    public boolean isVencido(Instant ahora) {
+        return devolucion == null && !vencimiento.isAfter(ahora);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ISBN: %s | Prestatario: %s | Desde: %s | Vence: %s | %s", isbn, prestatario,
+                FORMATO.format(inicio), FORMATO.format(vencimiento),
+                devolucion == null ? "Sin devolver" : "Devuelto: " + FORMATO.format(devolucion));
+    }
+}
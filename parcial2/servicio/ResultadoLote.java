@@ -0,0 +1,49 @@
+package servicio;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resultado de {@link BibliotecaService#procesarLote}: o se aplicaron todas las operaciones
+ * o ninguna, y en ese caso se informa el motivo de cada una que habría fallado.
+ */
+public final class ResultadoLote {
+    private final List<Operacion> operaciones;
+    /** Motivo del fallo de cada operación, en su misma posición; null si era válida. */
+    private final String[] errores;
+    private final boolean aplicado;
+
+    ResultadoLote(List<Operacion> operaciones, String[] errores, boolean aplicado) {
+        this.operaciones = operaciones;
+        this.errores = errores;
+        this.aplicado = aplicado;
+    }
+
+    public boolean isAplicado() {
+        return aplicado;
+    }
+
+    public int cantidad() {
+        return errores.length;
+    }
+
+    /** Motivo por el que la operación i no era válida, o null. */
+    public String getError(int i) {
+        return errores[i];
+    }
+
+    /** Un mensaje por operación fallida: "posición (operación): motivo". */
+    public List<String> getErrores() {
+        List<String> mensajes = new ArrayList<>();
+        for (int i = 0; i < errores.length; i++) {
+            if (errores[i] != null) mensajes.add((i + 1) + " (" + operaciones.get(i) + "): " + errores[i]);
+        }
+        return mensajes;
+    }
+
+    @Override
+    public String toString() {
+        return aplicado ? cantidad() + " operación(es) aplicadas"
+                : "lote rechazado, " + getErrores().size() + " de " + cantidad() + " operación(es) inválidas";
+    }
+}
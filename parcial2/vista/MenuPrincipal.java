@@ -1,14 +1,29 @@
 package vista;
 
+import estructura.Consulta;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.stream.Stream;
 import modelo.Libro;
 import servicio.BibliotecaService;
+import servicio.CatalogoCsv;
+import servicio.Metricas;
+import servicio.Operacion;
+import servicio.Prestamo;
+import servicio.ResultadoLote;
 
 /**
  * Interfaz de consola (Menu principal).
  */
 public class MenuPrincipal {
+    private static final int LIMITE_HISTORIAL = 20;
     private BibliotecaService servicio;
     private Scanner sc;
 
@@ -18,22 +33,33 @@ public class MenuPrincipal {
         precargarDatos();
     }
 
-    private void precargarDatos() {
-        // Los libros solicitados (8)
-        try {
-            servicio.registrarLibro(new Libro("978-0-06", "Cien Años de Soledad", "García M., Gabriel", "Sudamericana", 1967, "Literatura"));
-            servicio.registrarLibro(new Libro("978-0-07", "Ficciones", "Borges, Jorge L.", "Sur", 1944, "Ficción"));
-            servicio.registrarLibro(new Libro("978-0-08", "Rayuela", "Cortázar, Julio", "Sudamericana", 1963, "Literatura"));
-            servicio.registrarLibro(new Libro("978-0-09", "La Casa de los Espíritus", "Allende, Isabel", "Plaza & Janés", 1982, "Ficción"));
-            servicio.registrarLibro(new Libro("978-0-10", "Veinte Poemas de Amor", "Neruda, Pablo", "Nascimento", 1924, "Poesía"));
-            servicio.registrarLibro(new Libro("978-0-11", "Desolación", "Mistral, Gabriela", "Instituto Hisp.", 1922, "Poesía"));
-            servicio.registrarLibro(new Libro("978-0-12", "La Ciudad y los Perros", "Vargas Ll., Mario", "Seix Barral", 1963, "Literatura"));
-            servicio.registrarLibro(new Libro("978-0-13", "Pedro Páramo", "Rulfo, Juan", "FCE", 1955, "Literatura"));
-        } catch (IllegalArgumentException ex) {
-            // en la precarga ignoramos duplicados
+    /**
+     * Menú sobre un catálogo duradero guardado en el directorio; la precarga solo se hace
+     * la primera vez, cuando el directorio no tiene datos.
+     */
+    public MenuPrincipal(Path directorioDatos) throws IOException {
+        servicio = BibliotecaService.abrir(directorioDatos, true);
+        sc = new Scanner(System.in);
+        if (servicio.totalLibros() == 0) {
+            precargarDatos();
+        } else {
+            System.out.println("Catálogo recuperado: " + servicio.totalLibros() + " libros.");
         }
     }
 
+    private void precargarDatos() {
+        // Los libros solicitados (8), en una sola carga masiva; los ISBN repetidos se descartan
+        servicio.cargarMasivo(Stream.of(
+                new Libro("978-0-06", "Cien Años de Soledad", "García M., Gabriel", "Sudamericana", 1967, "Literatura"),
+                new Libro("978-0-07", "Ficciones", "Borges, Jorge L.", "Sur", 1944, "Ficción"),
+                new Libro("978-0-08", "Rayuela", "Cortázar, Julio", "Sudamericana", 1963, "Literatura"),
+                new Libro("978-0-09", "La Casa de los Espíritus", "Allende, Isabel", "Plaza & Janés", 1982, "Ficción"),
+                new Libro("978-0-10", "Veinte Poemas de Amor", "Neruda, Pablo", "Nascimento", 1924, "Poesía"),
+                new Libro("978-0-11", "Desolación", "Mistral, Gabriela", "Instituto Hisp.", 1922, "Poesía"),
+                new Libro("978-0-12", "La Ciudad y los Perros", "Vargas Ll., Mario", "Seix Barral", 1963, "Literatura"),
+                new Libro("978-0-13", "Pedro Páramo", "Rulfo, Juan", "FCE", 1955, "Literatura")));
+    }
+
     public void iniciar() {
         int opcion = -1;
         while (opcion != 0) {
@@ -64,6 +90,15 @@ public class MenuPrincipal {
         System.out.println(" 11. Listar libros prestados");
         System.out.println(" 12. Buscar libros por categoría");
         System.out.println(" 13. Estadísticas del catálogo");
+        System.out.println(" 14. Buscar libros por palabras del título");
+        System.out.println(" 15. Consulta combinada (años, categoría, editorial, disponibilidad)");
+        System.out.println(" 16. Importar libros desde CSV");
+        System.out.println(" 17. Exportar catálogo a CSV");
+        System.out.println(" 18. Métricas de rendimiento");
+        System.out.println(" 19. Préstamos y devoluciones en lote");
+        System.out.println(" 20. Préstamos de un prestatario");
+        System.out.println(" 21. Préstamos vencidos");
+        System.out.println(" 22. Historial de préstamos de un libro");
         System.out.println("  0. Salir");
         System.out.print("Seleccione una opción: ");
     }
@@ -109,7 +144,35 @@ public class MenuPrincipal {
             case 13:
                 opcionEstadisticas();
                 break;
+            case 14:
+                opcionBuscarPorTitulo();
+                break;
+            case 15:
+                opcionConsultaCombinada();
+                break;
+            case 16:
+                opcionImportarCsv();
+                break;
+            case 17:
+                opcionExportarCsv();
+                break;
+            case 18:
+                opcionMetricas();
+                break;
+            case 19:
+                opcionProcesarLote();
+                break;
+            case 20:
+                opcionPrestamosDe();
+                break;
+            case 21:
+                opcionPrestamosVencidos();
+                break;
+            case 22:
+                opcionHistorialLibro();
+                break;
             case 0:
+                cerrarCatalogo();
                 System.out.println("Saliendo. Gracias.");
                 break;
             default:
@@ -147,8 +210,13 @@ public class MenuPrincipal {
         System.out.print("Apellido del autor a buscar: ");
         String autor = sc.nextLine().trim();
         List<Libro> resultados = servicio.buscarPorAutor(autor);
+        if (resultados.isEmpty()) resultados = servicio.buscarPorAutorSinTildes(autor);
         if (resultados.isEmpty()) {
             System.out.println("No se encontraron libros para el autor: " + autor);
+            List<String> sugerencias = servicio.buscarAutorAproximado(autor);
+            if (!sugerencias.isEmpty()) {
+                System.out.println("¿Quiso decir? " + String.join(" | ", sugerencias.subList(0, Math.min(5, sugerencias.size()))));
+            }
         } else {
             System.out.println("Resultados:");
             resultados.forEach(l -> System.out.println(l.toString()));
@@ -169,18 +237,24 @@ public class MenuPrincipal {
     private void opcionEliminarPorAutor() {
         System.out.print("Apellido del autor a eliminar: ");
         String autor = sc.nextLine().trim();
+        System.out.print("ISBN del título a eliminar (vacío = todos los libros del autor): ");
+        String isbn = sc.nextLine().trim();
         try {
-            servicio.eliminarPorAutor(autor);
-            System.out.println("El autor y su libro fueron eliminados (si existían).");
+            if (isbn.isEmpty()) {
+                servicio.eliminarPorAutor(autor);
+                System.out.println("El autor y todos sus libros fueron eliminados.");
+            } else {
+                servicio.eliminarLibro(autor, isbn);
+                System.out.println("Libro eliminado correctamente.");
+            }
         } catch (IllegalArgumentException ex) {
             System.out.println("Error al eliminar: " + ex.getMessage());
         }
     }
 
     private void opcionListarInOrden() {
-        List<Libro> lista = servicio.listarInOrden();
-        if (lista.isEmpty()) System.out.println("No hay libros en el catálogo.");
-        else lista.forEach(l -> System.out.println(l));
+        if (servicio.totalLibros() == 0) System.out.println("No hay libros en el catálogo.");
+        else servicio.forEachInOrden(l -> System.out.println(l));
     }
 
     private void opcionListarPreOrden() {
@@ -202,7 +276,9 @@ public class MenuPrincipal {
             System.out.print("Nombre del prestatario: ");
             String nombre = sc.nextLine().trim();
             servicio.prestarLibro(isbn, nombre);
-            System.out.println("Préstamo registrado correctamente.");
+            Prestamo prestamo = servicio.prestamoActivo(isbn);
+            System.out.println("Préstamo registrado correctamente."
+                    + (prestamo != null ? " Vence: " + prestamo.getVencimiento().atZone(ZoneId.systemDefault()).toLocalDate() : ""));
         } catch (IllegalArgumentException | IllegalStateException ex) {
             System.out.println("Error al prestar: " + ex.getMessage());
         } catch (Exception ex) {
@@ -243,9 +319,77 @@ public class MenuPrincipal {
         else lista.forEach(l -> System.out.println(l));
     }
 
+    private void opcionBuscarPorTitulo() {
+        System.out.print("Palabras del título: ");
+        String consulta = sc.nextLine().trim();
+        List<Libro> lista = servicio.buscarPorTitulo(consulta);
+        if (lista.isEmpty()) System.out.println("No se encontraron títulos con: " + consulta);
+        else lista.forEach(l -> System.out.println(l));
+    }
+
+    /** Cada criterio es opcional: Enter lo deja sin filtrar. */
+    private void opcionConsultaCombinada() {
+        try {
+            Consulta consulta = Consulta.nueva();
+            System.out.print("Año desde (Enter = sin límite): ");
+            String desde = sc.nextLine().trim();
+            if (!desde.isEmpty()) consulta.anioDesde(Integer.parseInt(desde));
+            System.out.print("Año hasta (Enter = sin límite): ");
+            String hasta = sc.nextLine().trim();
+            if (!hasta.isEmpty()) consulta.anioHasta(Integer.parseInt(hasta));
+            System.out.print("Categoría (Enter = todas): ");
+            String categoria = sc.nextLine().trim();
+            if (!categoria.isEmpty()) consulta.categoria(categoria);
+            System.out.print("Editorial (Enter = todas): ");
+            String editorial = sc.nextLine().trim();
+            if (!editorial.isEmpty()) consulta.editorial(editorial);
+            System.out.print("Disponibilidad (d = disponibles, p = prestados, Enter = todos): ");
+            String disponibilidad = sc.nextLine().trim().toLowerCase();
+            if (disponibilidad.equals("d")) consulta.disponible(true);
+            else if (disponibilidad.equals("p")) consulta.disponible(false);
+
+            int[] encontrados = {0};
+            servicio.consultar(consulta, l -> {
+                System.out.println(l);
+                encontrados[0]++;
+            });
+            if (encontrados[0] == 0) System.out.println("No hay libros para: " + consulta);
+            else System.out.println(encontrados[0] + " libro(s) para: " + consulta);
+        } catch (NumberFormatException ex) {
+            System.out.println("Año inválido.");
+        }
+    }
+
+    private void opcionImportarCsv() {
+        System.out.print("Archivo CSV a importar: ");
+        String ruta = sc.nextLine().trim();
+        try {
+            CatalogoCsv.ResultadoImportacion resultado = servicio.importarCsv(Paths.get(ruta));
+            System.out.println("Importación terminada: " + resultado);
+            resultado.getErrores().forEach(error -> System.out.println("  " + error));
+            if (resultado.getRechazados() > resultado.getErrores().size()) {
+                System.out.println("  ... y " + (resultado.getRechazados() - resultado.getErrores().size()) + " rechazo(s) más");
+            }
+        } catch (IOException | InvalidPathException ex) {
+            System.out.println("No se pudo importar: " + ex.getMessage());
+        }
+    }
+
+    private void opcionExportarCsv() {
+        System.out.print("Archivo CSV de destino: ");
+        String ruta = sc.nextLine().trim();
+        try {
+            long escritos = servicio.exportarCsv(Paths.get(ruta));
+            System.out.println(escritos + " libro(s) exportados a " + ruta);
+        } catch (IOException | InvalidPathException ex) {
+            System.out.println("No se pudo exportar: " + ex.getMessage());
+        }
+    }
+
     private void opcionEstadisticas() {
         System.out.println("=== Estadísticas del catálogo ===");
         System.out.println("Total de libros: " + servicio.totalLibros());
+        System.out.println("Total de autores (apellidos): " + servicio.totalAutores());
         System.out.println("Altura del árbol: " + servicio.alturaArbol());
         Libro primero = servicio.primerAutor();
         Libro ultimo = servicio.ultimoAutor();
@@ -253,10 +397,99 @@ public class MenuPrincipal {
         System.out.println("Último autor (alfabéticamente): " + (ultimo != null ? ultimo.getAutor() : "N/A"));
         System.out.println("Total disponibles: " + servicio.totalDisponibles());
         System.out.println("Total prestados: " + servicio.totalPrestados());
+        System.out.println("Caché de consultas: " + servicio.estadisticasCache());
+        System.out.println("Libros por categoría:");
+        servicio.conteoPorCategoria().forEach((categoria, total) ->
+                System.out.println("  " + categoria + ": " + total));
+    }
+
+    /** Una operación por línea: "d ISBN" devuelve, "p ISBN Nombre" presta; línea vacía termina. */
+    private void opcionProcesarLote() {
+        System.out.println("Una operación por línea: 'd ISBN' para devolver, 'p ISBN Nombre' para prestar. Línea vacía para terminar.");
+        List<Operacion> lote = new ArrayList<>();
+        while (true) {
+            String linea = sc.nextLine().trim();
+            if (linea.isEmpty()) break;
+            String[] partes = linea.split("\\s+", 3);
+            if (partes[0].equalsIgnoreCase("d") && partes.length >= 2) {
+                lote.add(Operacion.devolver(partes[1]));
+            } else if (partes[0].equalsIgnoreCase("p") && partes.length == 3) {
+                lote.add(Operacion.prestar(partes[1], partes[2]));
+            } else {
+                System.out.println("Línea ignorada: " + linea);
+            }
+        }
+        if (lote.isEmpty()) return;
+        ResultadoLote resultado = servicio.procesarLote(lote);
+        System.out.println(resultado.isAplicado() ? "Lote aplicado: " + resultado : "Lote rechazado, no se aplicó ninguna operación:");
+        resultado.getErrores().forEach(error -> System.out.println("  " + error));
+    }
+
+    private void opcionPrestamosDe() {
+        System.out.print("Nombre del prestatario: ");
+        String nombre = sc.nextLine().trim();
+        List<Prestamo> activos = servicio.prestamosDe(nombre);
+        System.out.println("Libros en su poder: " + activos.size());
+        Instant ahora = Instant.now();
+        activos.forEach(p -> System.out.println((p.isVencido(ahora) ? "  [VENCIDO] " : "  ") + p));
+        List<Prestamo> historial = servicio.historialPrestatario(nombre, LIMITE_HISTORIAL);
+        System.out.println("Últimos préstamos (máx. " + LIMITE_HISTORIAL + "):");
+        historial.forEach(p -> System.out.println("  " + p));
     }
 
-    public static void main(String[] args) {
-        MenuPrincipal mp = new MenuPrincipal();
+    private void opcionPrestamosVencidos() {
+        List<Prestamo> vencidos = servicio.prestamosVencidos();
+        if (vencidos.isEmpty()) {
+            System.out.println("No hay préstamos vencidos.");
+            return;
+        }
+        System.out.println("Préstamos vencidos (" + vencidos.size() + "), del más atrasado al menos:");
+        vencidos.forEach(p -> System.out.println("  " + p));
+    }
+
+    private void opcionHistorialLibro() {
+        System.out.print("ISBN del libro: ");
+        String isbn = sc.nextLine().trim();
+        List<Prestamo> historial = servicio.historialLibro(isbn, LIMITE_HISTORIAL);
+        if (historial.isEmpty()) {
+            System.out.println("El libro no tiene préstamos registrados.");
+            return;
+        }
+        historial.forEach(p -> System.out.println("  " + p));
+    }
+
+    private void opcionMetricas() {
+        Metricas metricas = servicio.metricas();
+        System.out.println(metricas.informe());
+        System.out.print((metricas.isActivas() ? "d = desactivar" : "a = activar") + ", r = reiniciar, Enter = volver: ");
+        String accion = sc.nextLine().trim().toLowerCase();
+        if (accion.equals("a") || accion.equals("d")) {
+            metricas.setActivas(accion.equals("a"));
+            System.out.println("Métricas " + (metricas.isActivas() ? "activadas." : "desactivadas."));
+        } else if (accion.equals("r")) {
+            metricas.reiniciar();
+            System.out.println("Métricas reiniciadas.");
+        }
+    }
+
+    private void cerrarCatalogo() {
+        try {
+            servicio.cerrar();
+        } catch (IOException ex) {
+            System.out.println("Error al guardar el catálogo: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * @param args opcionalmente, el directorio donde se guarda el catálogo entre ejecuciones.
+     */
+    public static void main(String[] args) throws IOException {
+        MenuPrincipal mp = args.length > 0 ? new MenuPrincipal(Paths.get(args[0])) : new MenuPrincipal();
+        try {
+            mp.servicio.metricas().registrarEnJmx("catalogo");
+        } catch (IllegalStateException ex) {
+            System.out.println(ex.getMessage());
+        }
         mp.iniciar();
     }
 }
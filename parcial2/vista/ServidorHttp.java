@@ -0,0 +1,325 @@
+package vista;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import modelo.Libro;
+import servicio.BibliotecaService;
+
+/**
+ * API HTTP/JSON mínima sobre {@link BibliotecaService}, con el servidor HTTP del JDK.
+ *
+ * <pre>
+ * GET  /libros?autor=Borges          libros del autor
+ * GET  /libros?isbn=978-0-07         un libro (404 si no existe)
+ * GET  /libros?categoria=Poesía      libros de la categoría
+ * GET  /libros?titulo=cien+años      libros cuyo título contiene las palabras
+ *      (las listas se paginan con desde=0 y limite=100, hasta 1000)
+ * POST /prestamos?isbn=...&amp;prestatario=...
+ * POST /devoluciones?isbn=...
+ * GET  /estadisticas
+ * </pre>
+ *
+ * Cada petición corre en su propio hilo virtual si el JDK los tiene (21 o superior, se
+ * detecta por reflexión); si no, en un pool de hilos que crece a demanda. Como el servicio
+ * ya es seguro para uso concurrente, los manejadores no sincronizan nada: las consultas
+ * corren en paralelo con el candado de lectura y los préstamos comparten fsync del diario.
+ */
+public final class ServidorHttp {
+    private static final int COLA_CONEXIONES = 4096;
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final int LIMITE_PAGINA = 100;
+    private static final int LIMITE_MAXIMO = 1000;
+
+    /** Respuesta de error con su código HTTP. */
+    private static final class ErrorHttp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int codigo;
+
+        ErrorHttp(int codigo, String mensaje) {
+            super(mensaje);
+            this.codigo = codigo;
+        }
+    }
+
+    private final BibliotecaService servicio;
+    private final HttpServer servidor;
+    private final ExecutorService ejecutor;
+
+    private ServidorHttp(BibliotecaService servicio, HttpServer servidor, ExecutorService ejecutor) {
+        this.servicio = servicio;
+        this.servidor = servidor;
+        this.ejecutor = ejecutor;
+    }
+
+    /**
+     * Arranca el servidor en el puerto indicado de la interfaz de loopback (0 elige uno
+     * libre; ver {@link #puerto()}). La API no tiene autenticación: solo la máquina local
+     * puede prestar y devolver.
+     */
+    public static ServidorHttp iniciar(BibliotecaService servicio, int puerto) throws IOException {
+        return iniciar(servicio, new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto));
+    }
+
+    /**
+     * Arranca el servidor en la dirección indicada; escuchar en otras interfaces expone los
+     * préstamos y devoluciones, sin autenticación, a quien llegue a ellas.
+     */
+    public static ServidorHttp iniciar(BibliotecaService servicio, InetSocketAddress direccion) throws IOException {
+        HttpServer servidor = HttpServer.create(direccion, COLA_CONEXIONES);
+        ExecutorService ejecutor = crearEjecutor();
+        ServidorHttp api = new ServidorHttp(servicio, servidor, ejecutor);
+        servidor.createContext("/libros", intercambio -> api.atender(intercambio, "GET", api::libros));
+        servidor.createContext("/prestamos", intercambio -> api.atender(intercambio, "POST", api::prestar));
+        servidor.createContext("/devoluciones", intercambio -> api.atender(intercambio, "POST", api::devolver));
+        servidor.createContext("/estadisticas", intercambio -> api.atender(intercambio, "GET", parametros -> api.estadisticas()));
+        servidor.setExecutor(ejecutor);
+        servidor.start();
+        return api;
+    }
+
+    /**
+     * Un hilo virtual por tarea en JDK 21+; en versiones anteriores un pool de hilos
+     * demonio que crece a demanda y reutiliza los ociosos.
+     */
+    static ExecutorService crearEjecutor() {
+        try {
+            Method virtuales = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtuales.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newCachedThreadPool(tarea -> {
+                Thread hilo = new Thread(tarea, "http-biblioteca");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+        }
+    }
+
+    public int puerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    /** Deja de aceptar conexiones y espera hasta un segundo a las peticiones en curso. */
+    public void detener() {
+        servidor.stop(1);
+        ejecutor.shutdown();
+    }
+
+    private interface Manejador {
+        String responder(Map<String, String> parametros);
+    }
+
+    private void atender(HttpExchange intercambio, String metodo, Manejador manejador) throws IOException {
+        int codigo = 200;
+        String cuerpo;
+        try (InputStream entrada = intercambio.getRequestBody()) {
+            entrada.transferTo(OutputStream.nullOutputStream()); // la API recibe todo por parámetros
+            if (!metodo.equals(intercambio.getRequestMethod())) {
+                throw new ErrorHttp(405, "Método no permitido: " + intercambio.getRequestMethod());
+            }
+            cuerpo = manejador.responder(parametros(intercambio.getRequestURI().getRawQuery()));
+        } catch (ErrorHttp ex) {
+            codigo = ex.codigo;
+            cuerpo = error(ex.getMessage());
+        } catch (IllegalStateException ex) {
+            codigo = 409;
+            cuerpo = error(ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            codigo = 400;
+            cuerpo = error(ex.getMessage());
+        } catch (RuntimeException ex) {
+            codigo = 500;
+            cuerpo = error("Error interno: " + ex.getMessage());
+        }
+        byte[] bytes = cuerpo.getBytes(StandardCharsets.UTF_8);
+        try {
+            intercambio.getResponseHeaders().set("Content-Type", JSON);
+            intercambio.sendResponseHeaders(codigo, bytes.length);
+            intercambio.getResponseBody().write(bytes);
+        } finally {
+            intercambio.close();
+        }
+    }
+
+    private String libros(Map<String, String> parametros) {
+        if (parametros.containsKey("isbn")) {
+            return libro(new StringBuilder(256), existente(parametros.get("isbn"))).toString();
+        }
+        List<Libro> libros;
+        if (parametros.containsKey("autor")) libros = servicio.buscarPorAutor(parametros.get("autor"));
+        else if (parametros.containsKey("categoria")) libros = servicio.buscarPorCategoria(parametros.get("categoria"));
+        else if (parametros.containsKey("titulo")) libros = servicio.buscarPorTitulo(parametros.get("titulo"));
+        else libros = null;
+        if (libros != null) return pagina(libros, entero(parametros, "desde", 0), entero(parametros, "limite", LIMITE_PAGINA));
+        throw new IllegalArgumentException("Indique autor, isbn, categoria o titulo");
+    }
+
+    private String prestar(Map<String, String> parametros) {
+        Libro libro = existente(requerido(parametros, "isbn"));
+        servicio.prestarLibro(libro.getIsbn(), requerido(parametros, "prestatario"));
+        return libro(new StringBuilder(256), libro).toString();
+    }
+
+    private String devolver(Map<String, String> parametros) {
+        Libro libro = existente(requerido(parametros, "isbn"));
+        servicio.devolverLibro(libro.getIsbn());
+        return libro(new StringBuilder(256), libro).toString();
+    }
+
+    private Libro existente(String isbn) {
+        Libro libro = servicio.buscarPorIsbn(isbn);
+        if (libro == null) throw new ErrorHttp(404, "ISBN no encontrado: " + isbn);
+        return libro;
+    }
+
+    private String estadisticas() {
+        StringBuilder sb = new StringBuilder("{");
+        sb.append("\"libros\":").append(servicio.totalLibros());
+        sb.append(",\"autores\":").append(servicio.totalAutores());
+        sb.append(",\"altura\":").append(servicio.alturaArbol());
+        sb.append(",\"disponibles\":").append(servicio.totalDisponibles());
+        sb.append(",\"prestados\":").append(servicio.totalPrestados());
+        sb.append(",\"aciertosCache\":").append(servicio.estadisticasCache().tasaAciertos());
+        return sb.append('}').toString();
+    }
+
+    private static String requerido(Map<String, String> parametros, String nombre) {
+        String valor = parametros.get(nombre);
+        if (valor == null || valor.trim().isEmpty()) throw new IllegalArgumentException("Falta el parámetro " + nombre);
+        return valor;
+    }
+
+    /** Parámetros de la consulta ya decodificados; si uno se repite gana el último. */
+    static Map<String, String> parametros(String consulta) {
+        Map<String, String> parametros = new HashMap<>();
+        if (consulta == null || consulta.isEmpty()) return parametros;
+        for (String par : consulta.split("&")) {
+            if (par.isEmpty()) continue;
+            int igual = par.indexOf('=');
+            String nombre = igual < 0 ? par : par.substring(0, igual);
+            String valor = igual < 0 ? "" : par.substring(igual + 1);
+            parametros.put(URLDecoder.decode(nombre, StandardCharsets.UTF_8), URLDecoder.decode(valor, StandardCharsets.UTF_8));
+        }
+        return parametros;
+    }
+
+    /**
+     * Una página del resultado: {"total":N,"desde":D,"libros":[...]}. Paginar evita que una
+     * categoría con miles de libros genere respuestas de megabytes.
+     */
+    private static String pagina(List<Libro> libros, int desde, int limite) {
+        if (desde < 0) throw new IllegalArgumentException("desde inválido: " + desde);
+        if (limite < 1 || limite > LIMITE_MAXIMO) {
+            throw new IllegalArgumentException("limite debe estar entre 1 y " + LIMITE_MAXIMO);
+        }
+        int hasta = (int) Math.min(libros.size(), (long) desde + limite);
+        StringBuilder sb = new StringBuilder(64 + Math.max(0, hasta - desde) * 192);
+        sb.append("{\"total\":").append(libros.size()).append(",\"desde\":").append(desde).append(",\"libros\":[");
+        for (int i = desde; i < hasta; i++) {
+            if (i > desde) sb.append(',');
+            libro(sb, libros.get(i));
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static int entero(Map<String, String> parametros, String nombre, int porDefecto) {
+        String valor = parametros.get(nombre);
+        if (valor == null || valor.isEmpty()) return porDefecto;
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(nombre + " no es un número: " + valor);
+        }
+    }
+
+    private static StringBuilder libro(StringBuilder sb, Libro libro) {
+        boolean disponible;
+        String prestatario;
+        synchronized (libro) {
+            disponible = libro.isDisponible();
+            prestatario = libro.getPrestatario();
+        }
+        sb.append("{\"isbn\":");
+        texto(sb, libro.getIsbn()).append(",\"titulo\":");
+        texto(sb, libro.getTitulo()).append(",\"autor\":");
+        texto(sb, libro.getAutor()).append(",\"editorial\":");
+        texto(sb, libro.getEditorial()).append(",\"anio\":").append(libro.getAnioPublicacion()).append(",\"categoria\":");
+        texto(sb, libro.getCategoria()).append(",\"disponible\":").append(disponible).append(",\"prestatario\":");
+        return texto(sb, prestatario).append('}');
+    }
+
+    private static String error(String mensaje) {
+        return texto(new StringBuilder("{\"error\":"), mensaje).append('}').toString();
+    }
+
+    /** Cadena JSON entre comillas con los escapes obligatorios; null se escribe como null. */
+    static StringBuilder texto(StringBuilder sb, String valor) {
+        if (valor == null) return sb.append("null");
+        sb.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        return sb.append('"');
+    }
+
+    /**
+     * @param args puerto (8080 por defecto) y, opcionalmente, el directorio de datos del
+     *             catálogo duradero. Enter detiene el servidor.
+     */
+    /**
+     * Uso: java vista.ServidorHttp [puerto] [directorio de datos] [interfaz]
+     * Sin interfaz escucha solo en loopback; por ejemplo 0.0.0.0 escucha en todas.
+     */
+    public static void main(String[] args) throws IOException {
+        // sin TCP_NODELAY los encabezados y el cuerpo viajan en dos segmentos y el ACK
+        // retardado del cliente agrega ~40 ms a cada respuesta; se lee al crear el primer servidor
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        int puerto = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        BibliotecaService servicio = args.length > 1
+                ? BibliotecaService.abrir(Paths.get(args[1]), true)
+                : new BibliotecaService(true);
+        InetAddress interfaz = args.length > 2 ? InetAddress.getByName(args[2]) : InetAddress.getLoopbackAddress();
+        ServidorHttp api = iniciar(servicio, new InetSocketAddress(interfaz, puerto));
+        System.out.println("API de la biblioteca en http://" + interfaz.getHostAddress() + ":" + api.puerto()
+                + "/ (Enter para detener)");
+        new Scanner(System.in).nextLine();
+        api.detener();
+        servicio.cerrar();
+    }
+}